@@ -1,21 +1,22 @@
 package com.smart_parking_system.backend.config;
 
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.channel.DirectChannel;
-import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.mqtt.core.DefaultMqttPahoClientFactory;
 import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
-import org.springframework.integration.mqtt.inbound.MqttPahoMessageDrivenChannelAdapter;
+import org.springframework.integration.mqtt.inbound.Mqttv5PahoMessageDrivenChannelAdapter;
 import org.springframework.integration.mqtt.outbound.MqttPahoMessageHandler;
-import org.springframework.integration.mqtt.support.DefaultPahoMessageConverter;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 
+import java.nio.charset.StandardCharsets;
+
 @Configuration
 public class MqttConfig {
 
@@ -34,6 +35,9 @@ public class MqttConfig {
     @Value("${mqtt.base-topic}")
     private String baseTopic;
 
+    @Value("${mqtt.inbound.receive-maximum:100}")
+    private int receiveMaximum;
+
     @Bean
     public MqttPahoClientFactory mqttClientFactory() {
         DefaultMqttPahoClientFactory factory = new DefaultMqttPahoClientFactory();
@@ -59,80 +63,37 @@ public class MqttConfig {
         return new DirectChannel();
     }
 
+    // All inbound adapters feed MqttInboundDispatcher, which routes each message to one handler
     @Bean
-    public MessageChannel mqttMicrocontrollerInputChannel() {
-        return new DirectChannel();
-    }
-
-    @Bean
-    public MessageChannel mqttSensorInputChannel() {
-        return new DirectChannel();
-    }
-
-    @Bean
-    public MessageChannel mqttProvisionChannel() {
+    public MessageChannel mqttInboundChannel() {
         return new DirectChannel();
     }
 
-    @Bean
-    public MessageChannel mqttEntryRequestChannel() {
-        return new PublishSubscribeChannel();
-    }
-
+    /**
+     * Single MQTT v5 subscriber connection for every inbound message kind. Routing happens
+     * in-process (MqttInboundDispatcher), and receive-maximum caps how many unacknowledged
+     * QoS 1 messages the broker may push at once.
+     */
     @Bean
     public MessageProducer inbound() {
-        String[] topics = {
-                baseTopic + "/+/entry/request",
-                baseTopic + "/+/exit/request"
-        };
+        MqttConnectionOptions options = new MqttConnectionOptions();
+        options.setServerURIs(new String[] { brokerUrl });
+        options.setUserName(username);
+        options.setPassword(password.getBytes(StandardCharsets.UTF_8));
+        options.setAutomaticReconnect(true);
+        options.setCleanStart(true);
+        options.setConnectionTimeout(30);
+        options.setKeepAliveInterval(60);
+        options.setReceiveMaximum(receiveMaximum);
 
-        MqttPahoMessageDrivenChannelAdapter adapter = new MqttPahoMessageDrivenChannelAdapter(
+        // Raw byte[] payloads reach the handlers; MqttPayloadDecoder parses them without a String copy
+        Mqttv5PahoMessageDrivenChannelAdapter adapter = new Mqttv5PahoMessageDrivenChannelAdapter(
+                options,
                 clientId + "-inbound",
-                mqttClientFactory(),
-                topics);
-        adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
-        adapter.setQos(1);
-        adapter.setOutputChannel(mqttEntryRequestChannel());
-        return adapter;
-    }
-
-    @Bean
-    public MessageProducer statusInbound() {
-        MqttPahoMessageDrivenChannelAdapter adapter = new MqttPahoMessageDrivenChannelAdapter(
-                clientId + "-status-inbound",
-                mqttClientFactory(),
-                baseTopic + "/+/status");
-        adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
-        adapter.setQos(1);
-        adapter.setOutputChannel(mqttMicrocontrollerInputChannel());
-        return adapter;
-    }
-
-    @Bean
-    public MessageProducer sensorInbound() {
-        MqttPahoMessageDrivenChannelAdapter adapter = new MqttPahoMessageDrivenChannelAdapter(
-                clientId + "-sensor-inbound",
-                mqttClientFactory(),
-                baseTopic + "/+/sensor/status");
-        adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
-        adapter.setQos(1);
-        adapter.setOutputChannel(mqttSensorInputChannel());
-        return adapter;
-    }
-
-    @Bean
-    public MessageProducer provisionInbound() {
-        MqttPahoMessageDrivenChannelAdapter adapter = new MqttPahoMessageDrivenChannelAdapter(
-                clientId + "-provision-inbound",
-                mqttClientFactory(),
-                baseTopic + "/+/provision/request");
+                baseTopic + "/+/#");
         adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
         adapter.setQos(1);
-        adapter.setOutputChannel(mqttProvisionChannel());
+        adapter.setOutputChannel(mqttInboundChannel());
         return adapter;
     }
 
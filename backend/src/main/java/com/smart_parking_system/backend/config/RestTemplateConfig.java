@@ -1,14 +1,32 @@
 package com.smart_parking_system.backend.config;
 
+import com.smart_parking_system.backend.service.http.OutboundHttpClientFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
 
+    @Value("${http.client.lpr.connect-timeout-ms:${http.client.connect-timeout-ms:2000}}")
+    private long lprConnectTimeoutMs;
+
+    @Value("${http.client.lpr.read-timeout-ms:${http.client.read-timeout-ms:10000}}")
+    private long lprReadTimeoutMs;
+
+    @Value("${http.client.lpr.http2:false}")
+    private boolean lprHttp2;
+
+    @Value("${http.client.lpr.max-concurrent-requests:${http.client.max-concurrent-requests:16}}")
+    private int lprMaxConcurrentRequests;
+
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate lprRestTemplate(OutboundHttpClientFactory httpClientFactory) {
+        return httpClientFactory.restTemplate(new OutboundHttpClientFactory.Target("lpr",
+                Duration.ofMillis(lprConnectTimeoutMs), Duration.ofMillis(lprReadTimeoutMs), lprHttp2,
+                lprMaxConcurrentRequests));
     }
 }
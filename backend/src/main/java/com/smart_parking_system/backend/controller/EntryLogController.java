@@ -1,17 +1,26 @@
 package com.smart_parking_system.backend.controller;
 
 import com.smart_parking_system.backend.dto.EntryLogDto;
+import com.smart_parking_system.backend.dto.EntryLogPageDto;
 import com.smart_parking_system.backend.service.IEntryLogService;
+import com.smart_parking_system.backend.service.export.ExportFormat;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.Base64;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @RestController
@@ -43,24 +52,100 @@ public class EntryLogController {
         }
     }
 
+    @GetMapping("/inside-count")
+    public ResponseEntity<?> getInsideCount(@RequestParam("parkingSpaceId") Integer parkingSpaceId) {
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "parkingSpaceId", parkingSpaceId,
+                    "vehiclesInside", entryLogService.countVehiclesInside(parkingSpaceId)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Newest first; from (inclusive) and to (exclusive) bound inTime, plate matches a prefix
+    @GetMapping("/page")
+    public ResponseEntity<EntryLogPageDto> getPage(
+            @RequestParam("parkingSpaceId") Integer parkingSpaceId,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to,
+            @RequestParam(value = "activeOnly", defaultValue = "false") boolean activeOnly,
+            @RequestParam(value = "plate", required = false) String plate,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            return ResponseEntity.ok(entryLogService.getEntryLogPage(
+                    parkingSpaceId, from, to, activeOnly, plate, cursor, limit));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    // Same filters as /page, oldest first, written to the response as rows are read (format: csv | ndjson)
+    @GetMapping("/export")
+    public void export(
+            @RequestParam("parkingSpaceId") Integer parkingSpaceId,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to,
+            @RequestParam(value = "activeOnly", defaultValue = "false") boolean activeOnly,
+            @RequestParam(value = "plate", required = false) String plate,
+            @RequestParam(value = "format", defaultValue = "csv") String format,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        try {
+            ExportFormat exportFormat = ExportFormat.parse(format);
+            String filename = "entry-logs-ps-" + parkingSpaceId + "." + exportFormat.extension() + (gzip ? ".gz" : "");
+            response.setContentType(gzip ? "application/gzip" : exportFormat.contentType() + ";charset=UTF-8");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(filename).build().toString());
+
+            entryLogService.exportEntryLogs(parkingSpaceId, from, to, activeOnly, plate, exportFormat, gzip,
+                    response.getOutputStream());
+        } catch (IOException e) {
+            // Usually the client went away; the response is already partly sent
+            log.warn("Entry log export for parking space {} aborted: {}", parkingSpaceId, e.getMessage());
+        } catch (RejectedExecutionException e) {
+            log.warn("Entry log export for parking space {} rejected: {}", parkingSpaceId, e.getMessage());
+            response.reset();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+        } catch (RuntimeException e) {
+            if (response.isCommitted()) {
+                log.error("Entry log export for parking space {} failed midway", parkingSpaceId, e);
+                throw e;
+            }
+            response.reset();
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+        }
+    }
+
     @PostMapping(value = "/upload-image", consumes = "multipart/form-data")
     public ResponseEntity<?> uploadImage(
             @RequestParam("rfidCode") String rfidCode,
             @RequestPart("image") MultipartFile image) {
+        Path spooled = null;
         try {
-            byte[] imageBytes = image.getBytes();
-            String imageBase64 = Base64.getEncoder().encodeToString(imageBytes);
+            // Spool to our own temp file (a move when the container already wrote the part to disk)
+            // so the image never has to be held in memory
+            spooled = Files.createTempFile("lpr-", ".jpg");
+            image.transferTo(spooled);
 
-            EntryLogDto entryLog = entryLogService.updateEntryWithImage(rfidCode, imageBase64);
+            EntryLogDto entryLog = entryLogService.updateEntryWithImage(rfidCode, spooled);
+            spooled = null; // now owned by the recognition queue
 
-            log.info("Image uploaded and processed for rfidCode: {}, entryLogId: {}, licensePlate: {}",
-                    rfidCode, entryLog.getId(), entryLog.getLicensePlate());
+            log.info("Image accepted for rfidCode: {}, entryLogId: {}", rfidCode, entryLog.getId());
 
-            return ResponseEntity.ok(Map.of(
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
                     "success", true,
-                    "message", "Image processed successfully",
-                    "licensePlate", entryLog.getLicensePlate(),
+                    "message", "Image accepted for license plate recognition",
                     "entryLogId", entryLog.getId()));
+        } catch (RejectedExecutionException e) {
+            log.warn("License plate recognition busy, rejecting image for rfidCode: {}", rfidCode);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("success", false, "message", e.getMessage()));
         } catch (RuntimeException e) {
             log.error("Error uploading image for rfidCode: {}", rfidCode, e);
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -69,6 +154,14 @@ public class EntryLogController {
             log.error("Unexpected error uploading image for rfidCode: {}", rfidCode, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("success", false, "message", "Internal server error"));
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException e) {
+                    log.warn("Could not delete spooled image {}", spooled, e);
+                }
+            }
         }
     }
 }
@@ -5,6 +5,8 @@ import com.smart_parking_system.backend.dto.MicrocontrollerDto;
 import com.smart_parking_system.backend.dto.MqttCredentialsResponseDto;
 import com.smart_parking_system.backend.dto.UpdateMicrocontrollerRequestDto;
 import com.smart_parking_system.backend.service.IMicrocontrollerService;
+import com.smart_parking_system.backend.service.IMqttProvisionService;
+import com.smart_parking_system.backend.util.MqttTopicUtil;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -14,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/microcontrollers")
@@ -21,6 +24,7 @@ import java.util.List;
 public class MicrocontrollerController {
 
     private final IMicrocontrollerService microcontrollerService;
+    private final IMqttProvisionService mqttProvisionService;
 
     @PostMapping
     public ResponseEntity<?> createMicrocontroller(@Valid @RequestBody CreateMicrocontrollerRequestDto requestDto) {
@@ -117,4 +121,34 @@ public class MicrocontrollerController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+
+    /**
+     * Long-polls for the device's next provision request. The servlet thread is released while
+     * waiting; 204 means the device did not publish one within the timeout.
+     */
+    @GetMapping("/{id}/provision-data")
+    public CompletableFuture<ResponseEntity<?>> awaitProvisionData(
+            @PathVariable Integer id,
+            @RequestParam(defaultValue = "30") int timeoutSeconds) {
+        MicrocontrollerDto mc;
+        try {
+            mc = microcontrollerService.getMicrocontrollerById(id);
+        } catch (RuntimeException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("error", e.getMessage() != null ? e.getMessage() : "Bad Request");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse));
+        }
+
+        String ownerUsername = MqttTopicUtil.extractOwnerUsername(mc.getMqttUsername());
+        if (ownerUsername == null) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("error", "Microcontroller has no MQTT credentials")));
+        }
+
+        int timeout = Math.max(1, Math.min(timeoutSeconds, 60));
+        return mqttProvisionService.awaitProvisionData(ownerUsername, mc.getMcCode(), timeout)
+                .<ResponseEntity<?>>thenApply(request -> request != null
+                        ? ResponseEntity.ok(request)
+                        : ResponseEntity.noContent().build());
+    }
 }
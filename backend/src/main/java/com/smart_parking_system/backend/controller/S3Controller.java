@@ -1,5 +1,7 @@
 package com.smart_parking_system.backend.controller;
 
+import com.smart_parking_system.backend.dto.S3PresignBatchRequestDto;
+import com.smart_parking_system.backend.dto.S3PresignBatchResponseDto;
 import com.smart_parking_system.backend.dto.S3PresignRequestDto;
 import com.smart_parking_system.backend.dto.S3PresignResponseDto;
 import com.smart_parking_system.backend.service.IS3Service;
@@ -12,6 +14,8 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class S3Controller {
 
+    private static final int MAX_BATCH_KEYS = 500;
+
     private final IS3Service s3Service;
 
     @PostMapping("/presign-get")
@@ -19,5 +23,13 @@ public class S3Controller {
         String url = s3Service.presignGetUrl(req.getKey());
         return ResponseEntity.ok(new S3PresignResponseDto(url));
     }
-}
 
+    // Presigns the image keys of a whole page of entry logs in one request
+    @PostMapping("/presign-get-batch")
+    public ResponseEntity<S3PresignBatchResponseDto> presignGetBatch(@RequestBody S3PresignBatchRequestDto req) {
+        if (req.getKeys() != null && req.getKeys().size() > MAX_BATCH_KEYS) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(new S3PresignBatchResponseDto(s3Service.presignGetUrls(req.getKeys())));
+    }
+}
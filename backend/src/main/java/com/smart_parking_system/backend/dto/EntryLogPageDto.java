@@ -0,0 +1,18 @@
+package com.smart_parking_system.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class EntryLogPageDto {
+    private List<EntryLogDto> items;
+
+    /**
+     * Opaque position after the last item; pass it back as {@code cursor} to get the next page.
+     * Null on the last page.
+     */
+    private String nextCursor;
+}
@@ -0,0 +1,12 @@
+package com.smart_parking_system.backend.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+public class S3PresignBatchRequestDto {
+    private List<String> keys;
+}
@@ -0,0 +1,12 @@
+package com.smart_parking_system.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class S3PresignBatchResponseDto {
+    private List<S3PresignedUrlDto> urls;
+}
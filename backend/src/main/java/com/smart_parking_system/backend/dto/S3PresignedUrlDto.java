@@ -0,0 +1,14 @@
+package com.smart_parking_system.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+@AllArgsConstructor
+public class S3PresignedUrlDto {
+    private String key;
+    private String url;
+    private Instant expiresAt;
+}
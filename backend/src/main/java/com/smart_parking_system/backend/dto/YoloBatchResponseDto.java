@@ -0,0 +1,11 @@
+package com.smart_parking_system.backend.dto;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class YoloBatchResponseDto {
+
+    private List<YoloResponseDto> results;
+}
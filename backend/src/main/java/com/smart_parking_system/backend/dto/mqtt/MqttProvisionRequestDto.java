@@ -15,6 +15,9 @@ public class MqttProvisionRequestDto {
     private List<ComponentDto> lcds;
     private List<SensorComponentDto> sensors;
 
+    // Opaque hash of the manifest sent by the device; computed server-side when absent
+    private String manifestHash;
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
@@ -19,5 +19,8 @@ public record EntryLogEvent(
     public static EntryLogEvent exited(long eventId, Instant timestamp, Integer entryLogId, String licensePlate, String rfidCode, Integer parkingSpaceId) {
         return new EntryLogEvent("entrylog_event", eventId, timestamp, entryLogId, licensePlate, rfidCode, parkingSpaceId, "vehicle_exited");
     }
-}
 
+    public static EntryLogEvent plateRecognized(long eventId, Instant timestamp, Integer entryLogId, String licensePlate, String rfidCode, Integer parkingSpaceId) {
+        return new EntryLogEvent("entrylog_event", eventId, timestamp, entryLogId, licensePlate, rfidCode, parkingSpaceId, "license_plate_recognized");
+    }
+}
@@ -0,0 +1,18 @@
+package com.smart_parking_system.backend.dto.realtime;
+
+import java.time.Instant;
+
+public record MicrocontrollerStatusEvent(
+        String type,
+        long eventId,
+        Instant timestamp,
+        Integer microcontrollerId,
+        String mcCode,
+        Boolean online,
+        Instant lastSeen,
+        Integer parkingSpaceId
+) {
+    public static MicrocontrollerStatusEvent of(long eventId, Instant timestamp, Integer microcontrollerId, String mcCode, Boolean online, Instant lastSeen, Integer parkingSpaceId) {
+        return new MicrocontrollerStatusEvent("microcontroller_status_changed", eventId, timestamp, microcontrollerId, mcCode, online, lastSeen, parkingSpaceId);
+    }
+}
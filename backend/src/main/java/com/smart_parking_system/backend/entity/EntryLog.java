@@ -23,13 +23,21 @@ public class EntryLog {
     @JoinColumn(name = "rfid_id", nullable = false)
     private Rfid rfid;
 
+    // Denormalized from rfid.ps so per-lot listings can be served from an index on entry_log alone
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "ps_id", nullable = false)
+    private ParkingSpace ps;
+
     @Column(name = "license_plate", length = Integer.MAX_VALUE)
     private String licensePlate;
 
     @Column(name = "license_plate_image_key", length = Integer.MAX_VALUE)
     private String licensePlateImageKey;
 
-    @Column(name = "in_time")
+    // Partition key of entry_log (one partition per month)
+    @NotNull
+    @Column(name = "in_time", nullable = false)
     private Instant inTime;
 
     @Column(name = "out_time")
@@ -0,0 +1,91 @@
+package com.smart_parking_system.backend.mqtt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-lived memory of recently handled entry/exit requests, keyed by
+ * (mcCode, rfidCode, direction). QoS 1 redeliveries and RFID readers reporting the same card
+ * several times are absorbed here instead of reaching the entry log service.
+ * <p>
+ * A repeat inside the window gets the outcome of the first request: the door command that
+ * was issued (republished by the caller), or nothing if the first request was rejected.
+ */
+@Component
+public class GateRequestDeduplicator {
+
+    public enum Direction {
+        ENTRY, EXIT
+    }
+
+    private final long windowNanos;
+    private final Map<Key, Outcome> recent = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public GateRequestDeduplicator(
+            @Value("${mqtt.gate.dedupe-window-ms:5000}") long windowMillis,
+            MeterRegistry meterRegistry) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.hits = Counter.builder("mqtt.gate.dedupe")
+                .description("Gate requests answered from the deduplication window")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("mqtt.gate.dedupe")
+                .description("Gate requests passed on to the entry log service")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("mqtt.gate.dedupe.size", recent, Map::size)
+                .description("Gate requests currently remembered")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the outcome of an identical request handled inside the window, or null if this
+     * request has to be processed.
+     */
+    public Outcome lookup(String mcCode, String rfidCode, Direction direction) {
+        Outcome outcome = recent.get(new Key(mcCode, rfidCode, direction));
+        if (outcome != null && System.nanoTime() - outcome.handledAt() < windowNanos) {
+            hits.increment();
+            return outcome;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Remembers how a request was answered.
+     *
+     * @param commandTopic   topic of the issued door command, or null if the request was rejected
+     * @param commandPayload payload of the issued door command, or null if the request was rejected
+     */
+    public void remember(String mcCode, String rfidCode, Direction direction, String commandTopic,
+            String commandPayload) {
+        recent.put(new Key(mcCode, rfidCode, direction), new Outcome(commandTopic, commandPayload, System.nanoTime()));
+    }
+
+    @Scheduled(fixedDelayString = "${mqtt.gate.dedupe-window-ms:5000}")
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        recent.values().removeIf(outcome -> now - outcome.handledAt() >= windowNanos);
+    }
+
+    private record Key(String mcCode, String rfidCode, Direction direction) {
+    }
+
+    public record Outcome(String commandTopic, String commandPayload, long handledAt) {
+
+        public boolean accepted() {
+            return commandTopic != null;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.smart_parking_system.backend.mqtt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart_parking_system.backend.dto.mqtt.MqttCameraCommandDto;
+import com.smart_parking_system.backend.dto.mqtt.MqttDoorControlDto;
+import com.smart_parking_system.backend.service.IEntryLogService;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
+import com.smart_parking_system.backend.util.MqttTopicUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles an entry or exit request once its payload has been decoded: answers repeats from the
+ * deduplication window, admits the card, publishes the commands and remembers the outcome.
+ */
+@Slf4j
+@Component
+public class GateRequestProcessor {
+
+    private final IEntryLogService entryLogService;
+    private final MessageChannel mqttOutboundChannel;
+    private final ObjectMapper objectMapper;
+    private final DeviceTopologyRegistry topologyRegistry;
+    private final GateRequestDeduplicator deduplicator;
+    private final String baseTopic;
+    private final Map<GateRequestDeduplicator.Direction, Timer> decisionTimers =
+            new EnumMap<>(GateRequestDeduplicator.Direction.class);
+
+    public GateRequestProcessor(IEntryLogService entryLogService,
+            MessageChannel mqttOutboundChannel,
+            ObjectMapper objectMapper,
+            DeviceTopologyRegistry topologyRegistry,
+            GateRequestDeduplicator deduplicator,
+            MeterRegistry meterRegistry,
+            @Value("${mqtt.base-topic}") String baseTopic) {
+        this.entryLogService = entryLogService;
+        this.mqttOutboundChannel = mqttOutboundChannel;
+        this.objectMapper = objectMapper;
+        this.topologyRegistry = topologyRegistry;
+        this.deduplicator = deduplicator;
+        this.baseTopic = baseTopic;
+        for (GateRequestDeduplicator.Direction direction : GateRequestDeduplicator.Direction.values()) {
+            decisionTimers.put(direction, Timer.builder("mqtt.gate.decision")
+                    .description("Time from receiving an accepted gate request to publishing its door command, "
+                            + "including the wait on the ingestion lane and the stored decision")
+                    .tag("direction", name(direction))
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * @param receivedNanos {@link System#nanoTime()} when the request was received
+     */
+    public void process(MqttTopic topic, String rfidCode, GateRequestDeduplicator.Direction direction,
+            long receivedNanos) {
+        String mqttUsername = topic.mqttUsername();
+        String mcCode = topic.mcCode();
+        boolean entry = direction == GateRequestDeduplicator.Direction.ENTRY;
+        String name = name(direction);
+        String label = entry ? "Entry" : "Exit";
+
+        GateRequestDeduplicator.Outcome previous = deduplicator.lookup(mcCode, rfidCode, direction);
+        if (previous != null) {
+            if (previous.accepted()) {
+                publish(previous.commandTopic(), previous.commandPayload());
+            }
+            log.info("Repeated {} request for rfidCode {} from {} absorbed (accepted: {})",
+                    name, rfidCode, mqttUsername, previous.accepted());
+            return;
+        }
+
+        try {
+            if (entry) {
+                entryLogService.admitEntry(mcCode, rfidCode);
+            } else {
+                entryLogService.admitExit(mcCode, rfidCode);
+            }
+        } catch (DataAccessException | TransactionException e) {
+            // Infrastructure failure or timed-out (rolled back) decision: let the device's retry through
+            // instead of remembering a rejection
+            log.error("Database error handling {} request for rfidCode: {}", name, rfidCode, e);
+            return;
+        } catch (RuntimeException e) {
+            deduplicator.remember(mcCode, rfidCode, direction, null, null);
+            log.warn("{} request rejected for mqttUsername: {}, rfidCode: {}: {}", label, mqttUsername, rfidCode,
+                    e.getMessage());
+            return;
+        }
+
+        if (entry) {
+            publishCameraCommand(mcCode, mqttUsername, rfidCode);
+        }
+
+        publishDoorCommand(mcCode, mqttUsername, rfidCode, direction);
+        decisionTimers.get(direction).record(System.nanoTime() - receivedNanos, TimeUnit.NANOSECONDS);
+
+        log.info("{} request processed for mqttUsername: {}, rfidCode: {}", label, mqttUsername, rfidCode);
+    }
+
+    private void publishCameraCommand(String mcCode, String mqttUsername, String rfidCode) {
+        try {
+            MqttCameraCommandDto command = new MqttCameraCommandDto("camera", "snap", rfidCode);
+            String payload = objectMapper.writeValueAsString(command);
+            DeviceTopologyRegistry.Device device = topologyRegistry.device(mcCode);
+            String topic = device != null && device.cameraTopic() != null
+                    ? device.cameraTopic()
+                    : MqttTopicUtil.buildTopic(baseTopic, mqttUsername, "camera");
+
+            publish(topic, payload);
+
+            log.info("Published camera command to topic: {}", topic);
+        } catch (Exception e) {
+            log.error("Failed to publish camera command", e);
+        }
+    }
+
+    private void publishDoorCommand(String mcCode, String mqttUsername, String rfidCode,
+            GateRequestDeduplicator.Direction direction) {
+        try {
+            MqttDoorControlDto doorCommand = new MqttDoorControlDto(name(direction), "open");
+            String payload = objectMapper.writeValueAsString(doorCommand);
+            DeviceTopologyRegistry.Device device = topologyRegistry.device(mcCode);
+            String topic = device != null && device.commandTopic() != null
+                    ? device.commandTopic()
+                    : MqttTopicUtil.buildTopic(baseTopic, mqttUsername, "command");
+
+            publish(topic, payload);
+            deduplicator.remember(mcCode, rfidCode, direction, topic, payload);
+
+            log.info("Published door command to topic: {}", topic);
+        } catch (Exception e) {
+            log.error("Failed to publish door command", e);
+        }
+    }
+
+    private void publish(String topic, String payload) {
+        mqttOutboundChannel.send(
+                MessageBuilder.withPayload(payload)
+                        .setHeader(MqttHeaders.TOPIC, topic)
+                        .build());
+    }
+
+    // "entry" / "exit": the door command type and the timer tag
+    private static String name(GateRequestDeduplicator.Direction direction) {
+        return direction.name().toLowerCase(Locale.ROOT);
+    }
+}
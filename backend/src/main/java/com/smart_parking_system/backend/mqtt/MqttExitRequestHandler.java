@@ -1,93 +1,40 @@
 package com.smart_parking_system.backend.mqtt;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.smart_parking_system.backend.dto.mqtt.MqttDoorControlDto;
 import com.smart_parking_system.backend.dto.mqtt.MqttExitRequestDto;
-import com.smart_parking_system.backend.service.IEntryLogService;
-import com.smart_parking_system.backend.util.MqttTopicUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.integration.annotation.ServiceActivator;
-import org.springframework.integration.mqtt.support.MqttHeaders;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Component;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class MqttExitRequestHandler {
+public class MqttExitRequestHandler implements MqttInboundHandler {
 
-    private static final int MIN_TOPIC_PARTS = 3;
+    private final MqttPayloadDecoder payloadDecoder;
+    private final GateRequestProcessor gateRequestProcessor;
 
-    private final IEntryLogService entryLogService;
-    private final MessageChannel mqttOutboundChannel;
-    private final ObjectMapper objectMapper;
-
-    @Value("${mqtt.base-topic}")
-    private String baseTopic;
-
-    @ServiceActivator(inputChannel = "mqttEntryRequestChannel")
-    public void handleExitRequest(Message<?> message) {
-        try {
-            String topic = (String) message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
-
-            Object payloadObj = message.getPayload();
-            String payload;
-            if (payloadObj instanceof byte[]) {
-                payload = new String((byte[]) payloadObj);
-            } else {
-                payload = payloadObj != null ? payloadObj.toString() : null;
-            }
-
-            if (!MqttTopicUtil.topicEndsWith(topic, "/exit/request")) {
-                return;
-            }
-
-            log.info("Received exit request from topic: {}", topic);
-
-            if (!MqttTopicUtil.hasMinimumParts(topic, MIN_TOPIC_PARTS)) {
-                log.error("Invalid topic format: {}", topic);
-                return;
-            }
-
-            String mqttUsername = MqttTopicUtil.extractMqttUsername(topic);
-            String mcCode = MqttTopicUtil.extractMcCode(mqttUsername);
-
-            if (mcCode == null) {
-                log.error("Could not extract mcCode from mqttUsername: {}", mqttUsername);
-                return;
-            }
-
-            MqttExitRequestDto request = objectMapper.readValue(payload, MqttExitRequestDto.class);
-
-            entryLogService.handleExit(mcCode, request.getRfidCode());
-
-            publishDoorCommand(mqttUsername, "exit", "open");
-
-            log.info("Exit request processed for mqttUsername: {}, rfidCode: {}", mqttUsername, request.getRfidCode());
+    @Override
+    public MqttMessageKind kind() {
+        return MqttMessageKind.EXIT_REQUEST;
+    }
 
-        } catch (Exception e) {
-            log.error("Error handling exit request", e);
-        }
+    @Override
+    public void handle(MqttTopic topic, Message<?> message) {
+        handle(topic, message, System.nanoTime());
     }
 
-    private void publishDoorCommand(String mqttUsername, String commandType, String command) {
+    @Override
+    public void handle(MqttTopic topic, Message<?> message, long receivedNanos) {
+        log.info("Received exit request from topic: {}", topic.topic());
         try {
-            MqttDoorControlDto doorCommand = new MqttDoorControlDto(commandType, command);
-            String payload = objectMapper.writeValueAsString(doorCommand);
-            String topic = MqttTopicUtil.buildTopic(baseTopic, mqttUsername, "command");
-
-            mqttOutboundChannel.send(
-                    MessageBuilder.withPayload(payload)
-                            .setHeader(MqttHeaders.TOPIC, topic)
-                            .build());
-
-            log.info("Published door command to topic: {}", topic);
+            MqttExitRequestDto request = payloadDecoder.decode(message, MqttExitRequestDto.class);
+            gateRequestProcessor.process(topic, request.getRfidCode(), GateRequestDeduplicator.Direction.EXIT,
+                    receivedNanos);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected exit request: {}", e.getMessage());
         } catch (Exception e) {
-            log.error("Failed to publish door command", e);
+            log.error("Error handling exit request", e);
         }
     }
 }
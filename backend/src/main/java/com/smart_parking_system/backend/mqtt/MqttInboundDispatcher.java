@@ -0,0 +1,72 @@
+package com.smart_parking_system.backend.mqtt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.annotation.ServiceActivator;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single entry point for inbound MQTT messages. The topic is parsed once on the receiving
+ * thread, then the message is queued on the device's ingestion lane (gate, provisioning or
+ * telemetry queue) and handed to exactly one {@link MqttInboundHandler}, chosen by message kind.
+ */
+@Slf4j
+@Component
+public class MqttInboundDispatcher {
+
+    private final MqttIngestionLanes ingestionLanes;
+    private final Map<MqttMessageKind, MqttInboundHandler> handlers = new EnumMap<>(MqttMessageKind.class);
+    private final String baseTopic;
+
+    public MqttInboundDispatcher(MqttIngestionLanes ingestionLanes, List<MqttInboundHandler> inboundHandlers,
+            @Value("${mqtt.base-topic}") String baseTopic) {
+        this.ingestionLanes = ingestionLanes;
+        this.baseTopic = baseTopic;
+        for (MqttInboundHandler handler : inboundHandlers) {
+            MqttInboundHandler previous = handlers.put(handler.kind(), handler);
+            if (previous != null) {
+                throw new IllegalStateException("Multiple MQTT handlers registered for " + handler.kind() + ": "
+                        + previous.getClass().getSimpleName() + ", " + handler.getClass().getSimpleName());
+            }
+        }
+    }
+
+    @ServiceActivator(inputChannel = "mqttInboundChannel")
+    public void dispatch(Message<?> message) {
+        Object topicHeader = message.getHeaders().get(MqttHeaders.RECEIVED_TOPIC);
+        MqttTopic topic = MqttTopic.parse(topicHeader != null ? topicHeader.toString() : null, baseTopic);
+        if (topic == null) {
+            log.debug("Ignoring message on unrecognized topic: {}", topicHeader);
+            return;
+        }
+
+        MqttInboundHandler handler = handlers.get(topic.kind());
+        if (handler == null) {
+            log.debug("No handler registered for {} ({})", topic.kind(), topic.topic());
+            return;
+        }
+
+        switch (topic.kind().getTraffic()) {
+            case GATE -> {
+                long receivedNanos = System.nanoTime();
+                ingestionLanes.submitGate(topic.mcCode(), () -> handler.handle(topic, message, receivedNanos));
+            }
+            case PROVISIONING ->
+                    ingestionLanes.submitProvisioning(topic.mcCode(), () -> handler.handle(topic, message));
+            case TELEMETRY -> {
+                if (ingestionLanes.conflates()) {
+                    MqttInboundHandler.TelemetryTask telemetry = handler.telemetryTask(topic, message);
+                    ingestionLanes.submitTelemetry(topic.mcCode(), telemetry.conflationKey(), telemetry.task());
+                } else {
+                    ingestionLanes.submitTelemetry(topic.mcCode(), null, () -> handler.handle(topic, message));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.smart_parking_system.backend.mqtt;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Handler for one kind of inbound device message, invoked by {@link MqttInboundDispatcher}
+ * on the ingestion lane of the publishing device.
+ */
+public interface MqttInboundHandler {
+
+    MqttMessageKind kind();
+
+    void handle(MqttTopic topic, Message<?> message);
+
+    /**
+     * Gate messages are handed over with the {@link System#nanoTime()} at which the dispatcher
+     * received them, so handlers can measure latency including the wait on the lane.
+     */
+    default void handle(MqttTopic topic, Message<?> message, long receivedNanos) {
+        handle(topic, message);
+    }
+
+    /**
+     * Builds the queued work for a telemetry message when the lanes conflate. Runs on the receiving
+     * thread, so the key should come from the topic; a handler that needs the payload for it decodes
+     * it once here and hands the decoded value to the task.
+     */
+    default TelemetryTask telemetryTask(MqttTopic topic, Message<?> message) {
+        return new TelemetryTask(null, () -> handle(topic, message));
+    }
+
+    /**
+     * @param conflationKey key under which the queued task may be replaced by a newer one from the
+     *                      same source (latest reading wins); null means it is never conflated
+     */
+    record TelemetryTask(String conflationKey, Runnable task) {
+    }
+}
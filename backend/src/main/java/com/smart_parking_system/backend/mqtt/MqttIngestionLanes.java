@@ -0,0 +1,377 @@
+package com.smart_parking_system.backend.mqtt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of single-threaded worker lanes for inbound MQTT traffic.
+ * Work is hashed onto a lane by device key (mcCode), so messages from one device are
+ * processed in order while different devices run in parallel.
+ * <p>
+ * Each lane has three bounded queues, served in order. Gate traffic (entry/exit) is always
+ * taken first and is never dropped: when its queue is full the submitting (Paho callback)
+ * thread blocks, which pushes back on the broker. Provisioning comes next and is not dropped
+ * either, so a site power-cycling all its devices at once delays a barrier decision by at most
+ * the one provision already running. Telemetry (heartbeats, sensor readings) waits behind both
+ * and, when its queue is full, is shed according to {@link OverflowPolicy}, so a sensor storm
+ * cannot delay a barrier opening. Messages of an earlier queue may therefore overtake later
+ * ones from the same device.
+ */
+@Slf4j
+@Component
+public class MqttIngestionLanes {
+
+    /**
+     * What to do with telemetry when a lane's telemetry queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Replace a queued message with the same conflation key; otherwise drop the oldest. */
+        CONFLATE,
+        /** Drop the oldest queued telemetry message. */
+        DROP_OLDEST,
+        /** Drop the incoming message. */
+        DROP_NEWEST
+    }
+
+    private final Lane[] lanes;
+    private final OverflowPolicy overflowPolicy;
+    private final Counter conflatedCounter;
+    private final Counter droppedCounter;
+
+    public MqttIngestionLanes(
+            @Value("${mqtt.ingestion.lanes:0}") int laneCount,
+            @Value("${mqtt.ingestion.lane-capacity:1000}") int gateCapacity,
+            @Value("${mqtt.ingestion.provisioning-capacity:1000}") int provisioningCapacity,
+            @Value("${mqtt.ingestion.telemetry-capacity:1000}") int telemetryCapacity,
+            @Value("${mqtt.ingestion.telemetry-overflow:conflate}") String overflowPolicy,
+            MeterRegistry meterRegistry) {
+        this.overflowPolicy = OverflowPolicy.valueOf(overflowPolicy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        this.conflatedCounter = Counter.builder("mqtt.ingestion.telemetry.shed")
+                .description("Telemetry messages replaced by a newer one before processing")
+                .tag("reason", "conflated")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("mqtt.ingestion.telemetry.shed")
+                .description("Telemetry messages dropped because the lane was full")
+                .tag("reason", "dropped")
+                .register(meterRegistry);
+
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new Lane[count];
+        for (int i = 0; i < count; i++) {
+            Lane lane = new Lane(i, gateCapacity, provisioningCapacity, telemetryCapacity);
+            lanes[i] = lane;
+
+            String laneTag = String.valueOf(i);
+            Gauge.builder("mqtt.ingestion.lane.depth", lane, Lane::gateDepth)
+                    .description("Messages waiting in the MQTT ingestion lane")
+                    .tag("lane", laneTag)
+                    .tag("class", "gate")
+                    .register(meterRegistry);
+            Gauge.builder("mqtt.ingestion.lane.depth", lane, Lane::provisioningDepth)
+                    .description("Messages waiting in the MQTT ingestion lane")
+                    .tag("lane", laneTag)
+                    .tag("class", "provisioning")
+                    .register(meterRegistry);
+            Gauge.builder("mqtt.ingestion.lane.depth", lane, Lane::telemetryDepth)
+                    .description("Messages waiting in the MQTT ingestion lane")
+                    .tag("lane", laneTag)
+                    .tag("class", "telemetry")
+                    .register(meterRegistry);
+            Gauge.builder("mqtt.ingestion.lane.lag", lane, Lane::gateLagMillis)
+                    .description("Age of the oldest message waiting in the lane")
+                    .tag("lane", laneTag)
+                    .tag("class", "gate")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("mqtt.ingestion.lane.lag", lane, Lane::provisioningLagMillis)
+                    .description("Age of the oldest message waiting in the lane")
+                    .tag("lane", laneTag)
+                    .tag("class", "provisioning")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("mqtt.ingestion.lane.lag", lane, Lane::telemetryLagMillis)
+                    .description("Age of the oldest message waiting in the lane")
+                    .tag("lane", laneTag)
+                    .tag("class", "telemetry")
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+        }
+        log.info("MQTT ingestion started with {} lanes (gate capacity {}, provisioning capacity {}, "
+                + "telemetry capacity {}, overflow {})",
+                count, gateCapacity, provisioningCapacity, telemetryCapacity, this.overflowPolicy);
+    }
+
+    /**
+     * Queues latency-critical work on the lane owning {@code key}. Never dropped; blocks while
+     * the lane's gate queue is full.
+     */
+    public void submitGate(String key, Runnable task) {
+        Lane lane = laneFor(key);
+        lane.submitBlocking(lane.gate, lane.gateCapacity, lane.gateNotFull, task);
+    }
+
+    /**
+     * Queues provisioning on the lane owning {@code key}. Runs after any queued gate work and
+     * before telemetry; never dropped, blocks while the lane's provisioning queue is full.
+     */
+    public void submitProvisioning(String key, Runnable task) {
+        Lane lane = laneFor(key);
+        lane.submitBlocking(lane.provisioning, lane.provisioningCapacity, lane.provisioningNotFull, task);
+    }
+
+    /**
+     * Queues telemetry on the lane owning {@code key}. Runs after any queued gate and
+     * provisioning work and may be conflated or shed under overload.
+     *
+     * @param conflationKey identifies messages where only the latest matters; may be null
+     */
+    public void submitTelemetry(String key, String conflationKey, Runnable task) {
+        laneFor(key).submitTelemetry(conflationKey, task);
+    }
+
+    /**
+     * Whether telemetry is conflated; only then is a conflation key worth computing.
+     */
+    public boolean conflates() {
+        return overflowPolicy == OverflowPolicy.CONFLATE;
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    private Lane laneFor(String key) {
+        int hash = key != null ? key.hashCode() : 0;
+        return lanes[Math.floorMod(hash ^ (hash >>> 16), lanes.length)];
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.shutdown();
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.worker.join(TimeUnit.SECONDS.toMillis(5));
+                if (lane.worker.isAlive()) {
+                    lane.worker.interrupt();
+                }
+            } catch (InterruptedException e) {
+                lane.worker.interrupt();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final class Lane {
+
+        private final int index;
+        private final int gateCapacity;
+        private final int provisioningCapacity;
+        private final int telemetryCapacity;
+        private final ArrayDeque<LaneTask> gate = new ArrayDeque<>();
+        private final ArrayDeque<LaneTask> provisioning = new ArrayDeque<>();
+        private final ArrayDeque<LaneTask> telemetry = new ArrayDeque<>();
+        private final Map<String, LaneTask> pendingByConflationKey = new HashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition gateNotFull = lock.newCondition();
+        private final Condition provisioningNotFull = lock.newCondition();
+        private final Thread worker;
+        private volatile boolean running = true;
+
+        private Lane(int index, int gateCapacity, int provisioningCapacity, int telemetryCapacity) {
+            this.index = index;
+            this.gateCapacity = gateCapacity;
+            this.provisioningCapacity = provisioningCapacity;
+            this.telemetryCapacity = telemetryCapacity;
+            this.worker = new Thread(this::runLoop, "mqtt-lane-" + index);
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        private void submitBlocking(ArrayDeque<LaneTask> queue, int capacity, Condition notFull, Runnable task) {
+            lock.lock();
+            try {
+                while (queue.size() >= capacity) {
+                    ensureRunning();
+                    notFull.await();
+                }
+                ensureRunning();
+                queue.add(new LaneTask(task, System.nanoTime(), null));
+                notEmpty.signal();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for lane " + index, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void submitTelemetry(String conflationKey, Runnable task) {
+            lock.lock();
+            try {
+                ensureRunning();
+                if (overflowPolicy == OverflowPolicy.CONFLATE && conflationKey != null) {
+                    LaneTask pending = pendingByConflationKey.get(conflationKey);
+                    if (pending != null) {
+                        // Keep the queue position, run the newer message
+                        pending.task = task;
+                        conflatedCounter.increment();
+                        return;
+                    }
+                }
+                if (telemetry.size() >= telemetryCapacity) {
+                    droppedCounter.increment();
+                    if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                        return;
+                    }
+                    forget(telemetry.poll());
+                }
+                LaneTask laneTask = new LaneTask(task, System.nanoTime(),
+                        overflowPolicy == OverflowPolicy.CONFLATE ? conflationKey : null);
+                telemetry.add(laneTask);
+                if (laneTask.conflationKey != null) {
+                    pendingByConflationKey.put(laneTask.conflationKey, laneTask);
+                }
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void runLoop() {
+            while (true) {
+                LaneTask next;
+                lock.lock();
+                try {
+                    while (gate.isEmpty() && provisioning.isEmpty() && telemetry.isEmpty()) {
+                        if (!running) {
+                            return;
+                        }
+                        notEmpty.await();
+                    }
+                    if (!gate.isEmpty()) {
+                        next = gate.poll();
+                        gateNotFull.signal();
+                    } else if (!provisioning.isEmpty()) {
+                        next = provisioning.poll();
+                        provisioningNotFull.signal();
+                    } else {
+                        next = telemetry.poll();
+                        forget(next);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+                next.run();
+            }
+        }
+
+        // Caller holds the lock
+        private void forget(LaneTask task) {
+            if (task != null && task.conflationKey != null) {
+                pendingByConflationKey.remove(task.conflationKey, task);
+            }
+        }
+
+        private void ensureRunning() {
+            if (!running) {
+                throw new RejectedExecutionException("MQTT ingestion lane " + index + " is shut down");
+            }
+        }
+
+        private void shutdown() {
+            lock.lock();
+            try {
+                running = false;
+                notEmpty.signalAll();
+                gateNotFull.signalAll();
+                provisioningNotFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double gateDepth() {
+            return depth(gate);
+        }
+
+        private double provisioningDepth() {
+            return depth(provisioning);
+        }
+
+        private double telemetryDepth() {
+            return depth(telemetry);
+        }
+
+        private double gateLagMillis() {
+            return lagMillis(gate);
+        }
+
+        private double provisioningLagMillis() {
+            return lagMillis(provisioning);
+        }
+
+        private double telemetryLagMillis() {
+            return lagMillis(telemetry);
+        }
+
+        private double depth(ArrayDeque<LaneTask> queue) {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double lagMillis(ArrayDeque<LaneTask> queue) {
+            lock.lock();
+            try {
+                LaneTask head = queue.peek();
+                return head != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - head.enqueuedAt) : 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class LaneTask {
+
+        private volatile Runnable task;
+        private final long enqueuedAt;
+        private final String conflationKey;
+
+        private LaneTask(Runnable task, long enqueuedAt, String conflationKey) {
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+            this.conflationKey = conflationKey;
+        }
+
+        private void run() {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                // Errors too: nothing else drains this lane, and a full gate queue would block the MQTT client
+                log.error("Unhandled error in MQTT ingestion lane", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.smart_parking_system.backend.mqtt;
+
+/**
+ * Kinds of inbound device messages, identified by the topic suffix after
+ * {@code <base-topic>/<mqttUsername>/}, and the queue each is handled from.
+ */
+public enum MqttMessageKind {
+
+    ENTRY_REQUEST("entry/request", Traffic.GATE),
+    EXIT_REQUEST("exit/request", Traffic.GATE),
+    STATUS("status", Traffic.TELEMETRY),
+    SENSOR_STATUS("sensor/status", Traffic.TELEMETRY),
+    PROVISION_REQUEST("provision/request", Traffic.PROVISIONING);
+
+    /**
+     * Queues of an ingestion lane, in the order they are served.
+     */
+    public enum Traffic {
+        /** Entry/exit requests; never shed. */
+        GATE,
+        /** Provisioning (a database upsert each); never shed, but never ahead of a barrier decision. */
+        PROVISIONING,
+        /** Heartbeats and sensor readings; shed under overload. */
+        TELEMETRY
+    }
+
+    private final String suffix;
+    private final Traffic traffic;
+
+    MqttMessageKind(String suffix, Traffic traffic) {
+        this.suffix = suffix;
+        this.traffic = traffic;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+
+    public Traffic getTraffic() {
+        return traffic;
+    }
+}
@@ -0,0 +1,98 @@
+package com.smart_parking_system.backend.mqtt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.smart_parking_system.backend.dto.mqtt.MqttEntryRequestDto;
+import com.smart_parking_system.backend.dto.mqtt.MqttExitRequestDto;
+import com.smart_parking_system.backend.dto.mqtt.MqttProvisionRequestDto;
+import com.smart_parking_system.backend.dto.mqtt.MqttSensorStatusDto;
+import com.smart_parking_system.backend.dto.mqtt.MqttStatusRequestDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared JSON decoding for inbound MQTT payloads.
+ * Payloads are parsed straight from the Paho byte[] with one pre-built {@link ObjectReader}
+ * per DTO type. Oversized or obviously non-JSON payloads are rejected before Jackson runs.
+ */
+@Component
+public class MqttPayloadDecoder {
+
+    private final ObjectMapper objectMapper;
+    private final int maxPayloadBytes;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public MqttPayloadDecoder(ObjectMapper objectMapper,
+            @Value("${mqtt.max-payload-bytes:16384}") int maxPayloadBytes) {
+        this.objectMapper = objectMapper;
+        this.maxPayloadBytes = maxPayloadBytes;
+
+        for (Class<?> type : new Class<?>[] {
+                MqttEntryRequestDto.class,
+                MqttExitRequestDto.class,
+                MqttStatusRequestDto.class,
+                MqttSensorStatusDto.class,
+                MqttProvisionRequestDto.class }) {
+            readers.put(type, objectMapper.readerFor(type));
+        }
+    }
+
+    public <T> T decode(Message<?> message, Class<T> type) {
+        return decode(message.getPayload(), type);
+    }
+
+    /**
+     * Decodes a raw MQTT payload into {@code type}.
+     *
+     * @throws IllegalArgumentException if the payload is empty, too large or not a JSON object
+     */
+    public <T> T decode(Object payload, Class<T> type) {
+        byte[] bytes;
+        if (payload instanceof byte[] raw) {
+            bytes = raw;
+        } else if (payload instanceof String text) {
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+        } else {
+            throw new IllegalArgumentException("Unsupported MQTT payload type: "
+                    + (payload != null ? payload.getClass().getName() : "null"));
+        }
+
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Empty MQTT payload");
+        }
+        if (bytes.length > maxPayloadBytes) {
+            throw new IllegalArgumentException("MQTT payload of " + bytes.length
+                    + " bytes exceeds limit of " + maxPayloadBytes);
+        }
+        if (!startsWithObject(bytes)) {
+            throw new IllegalArgumentException("MQTT payload is not a JSON object");
+        }
+
+        try {
+            return readerFor(type).readValue(bytes);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed MQTT payload for " + type.getSimpleName()
+                    + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, objectMapper::readerFor);
+    }
+
+    private static boolean startsWithObject(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                continue;
+            }
+            return b == '{';
+        }
+        return false;
+    }
+}
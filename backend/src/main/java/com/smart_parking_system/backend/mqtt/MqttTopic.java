@@ -0,0 +1,43 @@
+package com.smart_parking_system.backend.mqtt;
+
+/**
+ * Parsed inbound topic of the form {@code <base-topic>/<owner>_<mcCode>/<suffix>}.
+ */
+public record MqttTopic(String topic, String mqttUsername, String ownerUsername, String mcCode,
+        MqttMessageKind kind) {
+
+    /**
+     * Parses {@code topic} with index arithmetic only (no split, no regex).
+     *
+     * @return the parsed topic, or null if it is not a known device topic under {@code baseTopic}
+     */
+    public static MqttTopic parse(String topic, String baseTopic) {
+        if (topic == null || !topic.startsWith(baseTopic)
+                || topic.length() <= baseTopic.length() || topic.charAt(baseTopic.length()) != '/') {
+            return null;
+        }
+
+        int usernameStart = baseTopic.length() + 1;
+        int usernameEnd = topic.indexOf('/', usernameStart);
+        if (usernameEnd <= usernameStart) {
+            return null;
+        }
+
+        MqttMessageKind kind = MqttTopicTrie.getDefault().match(topic, usernameEnd + 1);
+        if (kind == null) {
+            return null;
+        }
+
+        int lastUnderscore = topic.lastIndexOf('_', usernameEnd - 1);
+        if (lastUnderscore < usernameStart || lastUnderscore == usernameEnd - 1) {
+            return null;
+        }
+
+        return new MqttTopic(
+                topic,
+                topic.substring(usernameStart, usernameEnd),
+                topic.substring(usernameStart, lastUnderscore),
+                topic.substring(lastUnderscore + 1, usernameEnd),
+                kind);
+    }
+}
@@ -0,0 +1,71 @@
+package com.smart_parking_system.backend.mqtt;
+
+/**
+ * Character trie over the known topic suffixes. Matching walks the topic in place from a
+ * start offset, so resolving the message kind allocates nothing.
+ */
+public final class MqttTopicTrie {
+
+    private static final MqttTopicTrie DEFAULT = new MqttTopicTrie();
+
+    private final Node root = new Node();
+
+    private MqttTopicTrie() {
+        for (MqttMessageKind kind : MqttMessageKind.values()) {
+            Node node = root;
+            String suffix = kind.getSuffix();
+            for (int i = 0; i < suffix.length(); i++) {
+                node = node.childOrCreate(suffix.charAt(i));
+            }
+            node.kind = kind;
+        }
+    }
+
+    public static MqttTopicTrie getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the kind whose suffix is exactly {@code topic[from..]}, or null if none matches.
+     */
+    public MqttMessageKind match(String topic, int from) {
+        Node node = root;
+        for (int i = from; i < topic.length() && node != null; i++) {
+            node = node.child(topic.charAt(i));
+        }
+        return node != null ? node.kind : null;
+    }
+
+    private static final class Node {
+
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private MqttMessageKind kind;
+
+        private Node child(char c) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node childOrCreate(char c) {
+            Node existing = child(c);
+            if (existing != null) {
+                return existing;
+            }
+            int n = labels.length;
+            char[] newLabels = new char[n + 1];
+            Node[] newChildren = new Node[n + 1];
+            System.arraycopy(labels, 0, newLabels, 0, n);
+            System.arraycopy(children, 0, newChildren, 0, n);
+            newLabels[n] = c;
+            newChildren[n] = new Node();
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[n];
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.smart_parking_system.backend.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Open parking sessions and the number of vehicles inside each parking space.
+ * <p>
+ * active_session holds one row per card whose vehicle is inside, pointing at its open entry_log row,
+ * and parking_space_occupancy the matching count per parking space. Opening and closing a session
+ * changes both in one statement, so the gate path costs two primary-key writes and "vehicles
+ * inside" is a single-row read, however large entry_log grows. Both must run in the transaction
+ * that writes the entry_log row, after the card's rfid row has been locked.
+ * <p>
+ * entry_log stays the record of truth: {@link #findDrifted()}, {@link #repair(List)} and
+ * {@link #reconcileOccupancy()} rebuild sessions, rfid.currently_used and the counters from it.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ActiveSessionRepository {
+
+    private static final String SELECT_BY_RFID =
+            "SELECT rfid_id, log_id, in_time, ps_id FROM active_session WHERE rfid_id = ?";
+
+    private static final String OPEN = """
+            WITH opened AS (
+                INSERT INTO active_session (rfid_id, log_id, in_time, ps_id) VALUES (?, ?, ?, ?)
+                ON CONFLICT (rfid_id) DO NOTHING
+                RETURNING ps_id
+            )
+            INSERT INTO parking_space_occupancy (ps_id, vehicles_inside)
+            SELECT ps_id, 1 FROM opened
+            ON CONFLICT (ps_id) DO UPDATE SET vehicles_inside = parking_space_occupancy.vehicles_inside + 1""";
+
+    private static final String CLOSE = """
+            WITH closed AS (
+                DELETE FROM active_session WHERE rfid_id = ?
+                RETURNING rfid_id, log_id, in_time, ps_id
+            ), counted AS (
+                UPDATE parking_space_occupancy o SET vehicles_inside = o.vehicles_inside - 1
+                FROM closed c WHERE o.ps_id = c.ps_id
+            )
+            SELECT rfid_id, log_id, in_time, ps_id FROM closed""";
+
+    private static final String COUNT_INSIDE =
+            "SELECT vehicles_inside FROM parking_space_occupancy WHERE ps_id = ?";
+
+    // Cards whose session, flag or number of open logs disagree with entry_log
+    private static final String SELECT_DRIFTED = """
+            WITH open_logs AS (
+                SELECT rfid_id, log_id, ps_id,
+                       count(*) OVER (PARTITION BY rfid_id) AS open_count,
+                       row_number() OVER (PARTITION BY rfid_id ORDER BY in_time DESC, log_id DESC) AS rn
+                FROM entry_log
+                WHERE out_time IS NULL
+            )
+            SELECT r.rfid_id
+            FROM rfid r
+            LEFT JOIN open_logs o ON o.rfid_id = r.rfid_id AND o.rn = 1
+            LEFT JOIN active_session a ON a.rfid_id = r.rfid_id
+            WHERE a.log_id IS DISTINCT FROM o.log_id
+               OR a.ps_id IS DISTINCT FROM o.ps_id
+               OR o.open_count > 1
+               OR coalesce(r.currently_used, false) <> (o.log_id IS NOT NULL)
+            ORDER BY r.rfid_id""";
+
+    // Same lock the gate takes before it touches a card's sessions
+    private static final String LOCK_RFIDS =
+            "SELECT rfid_id FROM rfid WHERE rfid_id = ANY(?) ORDER BY rfid_id FOR UPDATE";
+
+    // Only the newest open log of a card stays open; older ones end when it started
+    private static final String CLOSE_DUPLICATES = """
+            UPDATE entry_log el SET out_time = newest.in_time
+            FROM (
+                SELECT DISTINCT ON (rfid_id) rfid_id, log_id, in_time
+                FROM entry_log
+                WHERE out_time IS NULL AND rfid_id = ANY(?)
+                ORDER BY rfid_id, in_time DESC, log_id DESC
+            ) newest
+            WHERE el.rfid_id = newest.rfid_id AND el.out_time IS NULL AND el.log_id <> newest.log_id""";
+
+    private static final String DELETE_SESSIONS = "DELETE FROM active_session WHERE rfid_id = ANY(?)";
+
+    private static final String INSERT_SESSIONS = """
+            INSERT INTO active_session (rfid_id, log_id, in_time, ps_id)
+            SELECT rfid_id, log_id, in_time, ps_id
+            FROM entry_log
+            WHERE out_time IS NULL AND rfid_id = ANY(?)""";
+
+    private static final String SYNC_CURRENTLY_USED = """
+            UPDATE rfid r SET currently_used = EXISTS (SELECT 1 FROM active_session a WHERE a.rfid_id = r.rfid_id)
+            WHERE r.rfid_id = ANY(?)
+            RETURNING r.rfid_code""";
+
+    private static final String ADD_MISSING_OCCUPANCY = """
+            INSERT INTO parking_space_occupancy (ps_id, vehicles_inside)
+            SELECT ps_id, 0 FROM parking_space
+            ON CONFLICT (ps_id) DO NOTHING""";
+
+    private static final String LOCK_OCCUPANCY =
+            "SELECT ps_id FROM parking_space_occupancy ORDER BY ps_id FOR UPDATE";
+
+    private static final String SYNC_OCCUPANCY = """
+            UPDATE parking_space_occupancy o SET vehicles_inside = actual.vehicles_inside
+            FROM (
+                SELECT ps.ps_id, count(a.rfid_id)::int AS vehicles_inside
+                FROM parking_space ps
+                LEFT JOIN active_session a ON a.ps_id = ps.ps_id
+                GROUP BY ps.ps_id
+            ) actual
+            WHERE o.ps_id = actual.ps_id AND o.vehicles_inside <> actual.vehicles_inside""";
+
+    private static final RowMapper<ActiveSession> SESSION_MAPPER = (rs, rowNum) -> new ActiveSession(
+            rs.getInt("rfid_id"),
+            rs.getInt("log_id"),
+            rs.getObject("in_time", OffsetDateTime.class).toInstant(),
+            rs.getInt("ps_id"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public record ActiveSession(int rfidId, int logId, Instant inTime, int psId) {
+    }
+
+    public record Repair(int closedLogs, List<String> rfidCodes) {
+    }
+
+    public Optional<ActiveSession> findByRfidId(int rfidId) {
+        return jdbcTemplate.query(SELECT_BY_RFID, SESSION_MAPPER, rfidId).stream().findFirst();
+    }
+
+    /**
+     * Records the card's open log and counts the vehicle in.
+     *
+     * @return false, changing nothing, if the card already has a session
+     */
+    public boolean open(int rfidId, int logId, Instant inTime, int psId) {
+        return jdbcTemplate.update(OPEN, rfidId, logId, OffsetDateTime.ofInstant(inTime, ZoneOffset.UTC), psId) == 1;
+    }
+
+    /**
+     * Removes the card's session and counts the vehicle out.
+     *
+     * @return the removed session, empty if the card had none
+     */
+    public Optional<ActiveSession> close(int rfidId) {
+        return jdbcTemplate.query(CLOSE, SESSION_MAPPER, rfidId).stream().findFirst();
+    }
+
+    public int countInside(int psId) {
+        List<Integer> count = jdbcTemplate.queryForList(COUNT_INSIDE, Integer.class, psId);
+        return count.isEmpty() ? 0 : count.get(0);
+    }
+
+    /**
+     * Reads, without locking anything, the cards that need {@link #repair(List)}.
+     */
+    public List<Integer> findDrifted() {
+        return jdbcTemplate.queryForList(SELECT_DRIFTED, Integer.class);
+    }
+
+    /**
+     * Locks the cards, closes all but their newest open log, rebuilds their sessions from entry_log
+     * and sets currently_used accordingly. Counters are left to {@link #reconcileOccupancy()}.
+     * Must run in a transaction.
+     */
+    public Repair repair(List<Integer> rfidIds) {
+        Integer[] ids = rfidIds.toArray(new Integer[0]);
+        jdbcTemplate.query(withIds(LOCK_RFIDS, ids), rs -> {
+        });
+        int closedLogs = jdbcTemplate.update(withIds(CLOSE_DUPLICATES, ids));
+        jdbcTemplate.update(withIds(DELETE_SESSIONS, ids));
+        jdbcTemplate.update(withIds(INSERT_SESSIONS, ids));
+        List<String> rfidCodes = jdbcTemplate.query(withIds(SYNC_CURRENTLY_USED, ids), (rs, rowNum) -> rs.getString(1));
+        return new Repair(closedLogs, rfidCodes);
+    }
+
+    /**
+     * Sets every parking space's counter to its number of sessions. Counters are locked first, so
+     * gate transactions that already changed theirs are counted and later ones wait and apply on top.
+     * Must run in a transaction.
+     *
+     * @return how many counters were wrong
+     */
+    public int reconcileOccupancy() {
+        jdbcTemplate.update(ADD_MISSING_OCCUPANCY);
+        jdbcTemplate.query(LOCK_OCCUPANCY, rs -> {
+        });
+        return jdbcTemplate.update(SYNC_OCCUPANCY);
+    }
+
+    private static PreparedStatementCreator withIds(String sql, Integer[] ids) {
+        return connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setArray(1, connection.createArrayOf("int4", ids));
+            return statement;
+        };
+    }
+}
@@ -0,0 +1,112 @@
+package com.smart_parking_system.backend.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forward-only read of a parking space's entry logs for export.
+ * Rows are handed to the callback one at a time while the driver fetches them {@code fetch-size}
+ * at a time, so memory use does not depend on how many rows match. PostgreSQL only honours the
+ * fetch size inside a transaction; callers must hold one for the whole read.
+ * <p>
+ * The read holds its connection for as long as the client takes to download, so it is bounded
+ * inside that transaction: each fetch by {@code statement-timeout-ms}, and the gaps between fetches,
+ * while the client catches up, by {@code idle-timeout-ms}. PostgreSQL ends the session if the client
+ * stalls for longer, which gives the connection back to the pool.
+ */
+@Repository
+public class EntryLogExportRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int fetchSize;
+    private final long statementTimeoutMillis;
+    private final long idleTimeoutMillis;
+
+    public EntryLogExportRepository(JdbcTemplate jdbcTemplate,
+                                    @Value("${entry-log.export.fetch-size:1000}") int fetchSize,
+                                    @Value("${entry-log.export.statement-timeout-ms:60000}") long statementTimeoutMillis,
+                                    @Value("${entry-log.export.idle-timeout-ms:30000}") long idleTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+        this.statementTimeoutMillis = statementTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public record Row(int id, int rfidId, String rfidCode, String licensePlate, String licensePlateImageKey,
+                      Instant inTime, Instant outTime) {
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(Row row) throws SQLException;
+    }
+
+    /**
+     * Streams the matching logs oldest first. Filters mean the same as in
+     * {@link EntryLogRepositoryCustom#findPage}; seek and limit fields of the query are ignored.
+     */
+    public void forEach(EntryLogPageQuery query, RowConsumer consumer) {
+        StringBuilder sql = new StringBuilder("""
+                SELECT el.log_id, el.rfid_id, r.rfid_code, el.license_plate, el.license_plate_image_key,
+                       el.in_time, el.out_time
+                FROM entry_log el JOIN rfid r ON r.rfid_id = el.rfid_id
+                WHERE el.ps_id = ?""");
+        List<Object> params = new ArrayList<>();
+        params.add(query.parkingSpaceId());
+        if (query.from() != null) {
+            sql.append(" AND el.in_time >= ?");
+            params.add(OffsetDateTime.ofInstant(query.from(), ZoneOffset.UTC));
+        }
+        if (query.to() != null) {
+            sql.append(" AND el.in_time < ?");
+            params.add(OffsetDateTime.ofInstant(query.to(), ZoneOffset.UTC));
+        }
+        if (query.activeOnly()) {
+            sql.append(" AND el.out_time IS NULL");
+        }
+        if (query.platePrefix() != null) {
+            sql.append(" AND el.license_plate LIKE ? ESCAPE '\\'");
+            params.add(EntryLogRepositoryImpl.escapeLike(query.platePrefix()) + "%");
+        }
+        sql.append(" ORDER BY el.in_time, el.log_id");
+
+        RowCallbackHandler handler = rs -> consumer.accept(new Row(
+                rs.getInt(1),
+                rs.getInt(2),
+                rs.getString(3),
+                rs.getString(4),
+                rs.getString(5),
+                toInstant(rs, 6),
+                toInstant(rs, 7)));
+
+        // SET LOCAL: both end with the caller's transaction
+        jdbcTemplate.execute("SET LOCAL statement_timeout = " + statementTimeoutMillis);
+        jdbcTemplate.execute("SET LOCAL idle_in_transaction_session_timeout = " + idleTimeoutMillis);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+            return statement;
+        }, handler);
+    }
+
+    // Same binding Hibernate uses for Instant, so exported times match the JSON API
+    private static Instant toInstant(ResultSet rs, int column) throws SQLException {
+        OffsetDateTime value = rs.getObject(column, OffsetDateTime.class);
+        return value == null ? null : value.toInstant();
+    }
+}
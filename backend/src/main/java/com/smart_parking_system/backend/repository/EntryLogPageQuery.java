@@ -0,0 +1,19 @@
+package com.smart_parking_system.backend.repository;
+
+import java.time.Instant;
+
+/**
+ * Filters and seek position for one page of a parking space's entry logs, newest first.
+ * Null fields are not filtered on; {@code afterInTime}/{@code afterId} is the last row of the
+ * previous page.
+ */
+public record EntryLogPageQuery(
+        Integer parkingSpaceId,
+        Instant from,
+        Instant to,
+        boolean activeOnly,
+        String platePrefix,
+        Instant afterInTime,
+        Integer afterId,
+        int limit) {
+}
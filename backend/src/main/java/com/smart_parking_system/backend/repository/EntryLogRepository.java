@@ -2,24 +2,28 @@ package com.smart_parking_system.backend.repository;
 
 import com.smart_parking_system.backend.entity.EntryLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
-public interface EntryLogRepository extends JpaRepository<EntryLog, Integer> {
-
-    @Query("SELECT el FROM EntryLog el WHERE el.rfid.id = :rfidId AND el.outTime IS NULL")
-    Optional<EntryLog> findActiveByRfidId(@Param("rfidId") Integer rfidId);
-
-    @Query("SELECT el FROM EntryLog el WHERE el.rfid.ps.id = :psId ORDER BY el.inTime DESC")
-    List<EntryLog> findAllByParkingSpaceId(@Param("psId") Integer psId);
-}
-
-
+public interface EntryLogRepository extends JpaRepository<EntryLog, Integer>, EntryLogRepositoryCustom {
 
+    // entry_log is partitioned by inTime; the bounds below let PostgreSQL skip the other partitions
 
+    Optional<EntryLog> findByIdAndInTime(Integer id, Instant inTime);
 
+    @Modifying
+    @Query("UPDATE EntryLog el SET el.outTime = :outTime WHERE el.id = :id AND el.inTime = :inTime")
+    int close(@Param("id") Integer id, @Param("inTime") Instant inTime, @Param("outTime") Instant outTime);
 
+    @Modifying
+    @Query("UPDATE EntryLog el SET el.licensePlate = :plate WHERE el.id = :id AND el.inTime = :inTime")
+    int updateLicensePlate(@Param("id") Integer id, @Param("inTime") Instant inTime, @Param("plate") String plate);
 
+    @Query("SELECT el FROM EntryLog el JOIN FETCH el.rfid WHERE el.ps.id = :psId ORDER BY el.inTime DESC")
+    List<EntryLog> findAllByParkingSpaceId(@Param("psId") Integer psId);
+}
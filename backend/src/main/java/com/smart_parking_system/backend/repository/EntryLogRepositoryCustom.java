@@ -0,0 +1,10 @@
+package com.smart_parking_system.backend.repository;
+
+import com.smart_parking_system.backend.entity.EntryLog;
+
+import java.util.List;
+
+public interface EntryLogRepositoryCustom {
+
+    List<EntryLog> findPage(EntryLogPageQuery query);
+}
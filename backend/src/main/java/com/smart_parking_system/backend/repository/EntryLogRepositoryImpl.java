@@ -0,0 +1,63 @@
+package com.smart_parking_system.backend.repository;
+
+import com.smart_parking_system.backend.entity.EntryLog;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyset (seek) pagination over entry_log. Pages are ordered by (in_time, log_id) descending and a
+ * page starts right after the last row of the previous one, so every page is a range scan of
+ * idx_entry_log_ps_in_time (or its active-only partial twin) of at most {@code limit} rows,
+ * however deep it is and however much history the parking space has.
+ * <p>
+ * Only the filters that are set end up in the statement; "(:param IS NULL OR ...)" conditions
+ * would keep PostgreSQL from using the index bounds.
+ */
+public class EntryLogRepositoryImpl implements EntryLogRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<EntryLog> findPage(EntryLogPageQuery query) {
+        StringBuilder jpql = new StringBuilder("SELECT el FROM EntryLog el JOIN FETCH el.rfid WHERE el.ps.id = :psId");
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("psId", query.parkingSpaceId());
+
+        if (query.from() != null) {
+            jpql.append(" AND el.inTime >= :from");
+            parameters.put("from", query.from());
+        }
+        if (query.to() != null) {
+            jpql.append(" AND el.inTime < :to");
+            parameters.put("to", query.to());
+        }
+        if (query.activeOnly()) {
+            jpql.append(" AND el.outTime IS NULL");
+        }
+        if (query.platePrefix() != null) {
+            jpql.append(" AND el.licensePlate LIKE :plate ESCAPE '\\'");
+            parameters.put("plate", escapeLike(query.platePrefix()) + "%");
+        }
+        if (query.afterInTime() != null && query.afterId() != null) {
+            // (in_time, log_id) < (:afterInTime, :afterId), spelled out so the first term bounds the index scan
+            jpql.append(" AND el.inTime <= :afterInTime AND (el.inTime < :afterInTime OR el.id < :afterId)");
+            parameters.put("afterInTime", query.afterInTime());
+            parameters.put("afterId", query.afterId());
+        }
+        jpql.append(" ORDER BY el.inTime DESC, el.id DESC");
+
+        TypedQuery<EntryLog> typedQuery = entityManager.createQuery(jpql.toString(), EntryLog.class);
+        parameters.forEach(typedQuery::setParameter);
+        return typedQuery.setMaxResults(query.limit()).getResultList();
+    }
+
+    static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
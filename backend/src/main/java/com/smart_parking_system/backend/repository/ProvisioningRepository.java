@@ -0,0 +1,134 @@
+package com.smart_parking_system.backend.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based upsert of a device's provisioning manifest.
+ * Doors, LCDs, slots and sensors are written by one statement made of data-modifying CTEs, so a
+ * manifest costs a single round-trip no matter how many components it lists. Rows whose name is
+ * already taken by another microcontroller (or, for sensors, another slot) are left untouched and
+ * simply missing from the result. Sensors come back with their slot, so callers can update an
+ * in-memory topology without reading it again.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProvisioningRepository {
+
+    private static final String UPSERT_MANIFEST = """
+            WITH door_in AS (
+                SELECT DISTINCT name FROM unnest(?::varchar[]) AS t(name)
+            ), doors AS (
+                INSERT INTO door (name, mc_id, is_opened)
+                SELECT name, ?, false FROM door_in
+                ON CONFLICT (name) DO UPDATE SET mc_id = EXCLUDED.mc_id
+                    WHERE door.mc_id = EXCLUDED.mc_id
+                RETURNING door_id, name
+            ), lcd_in AS (
+                SELECT DISTINCT name FROM unnest(?::varchar[]) AS t(name)
+            ), lcds AS (
+                INSERT INTO lcd (name, mc_id, display)
+                SELECT name, ?, '' FROM lcd_in
+                ON CONFLICT (name) DO UPDATE SET mc_id = EXCLUDED.mc_id
+                    WHERE lcd.mc_id = EXCLUDED.mc_id
+                RETURNING lcd_id, name
+            ), sensor_in AS (
+                SELECT DISTINCT ON (name) name, type, slot_name
+                FROM unnest(?::varchar[], ?::varchar[], ?::varchar[]) AS t(name, type, slot_name)
+            ), slot_in AS (
+                SELECT DISTINCT slot_name AS name FROM sensor_in
+            ), new_slots AS (
+                INSERT INTO slot (name, ps_id, is_occupied)
+                SELECT name, ?, false FROM slot_in
+                ON CONFLICT (name) DO NOTHING
+                RETURNING slot_id, name, ps_id, is_occupied
+            ), slots AS (
+                SELECT slot_id, name, ps_id, is_occupied FROM new_slots
+                UNION ALL
+                SELECT s.slot_id, s.name, s.ps_id, s.is_occupied FROM slot s JOIN slot_in i ON i.name = s.name
+            ), sensors AS (
+                INSERT INTO sensor (name, type, slot_id, mc_id)
+                SELECT i.name, i.type, sl.slot_id, ? FROM sensor_in i JOIN slots sl ON sl.name = i.slot_name
+                ON CONFLICT (name) DO UPDATE SET type = COALESCE(EXCLUDED.type, sensor.type)
+                    WHERE sensor.mc_id = EXCLUDED.mc_id AND sensor.slot_id = EXCLUDED.slot_id
+                RETURNING sensor_id, name, type, slot_id
+            )
+            SELECT 'door' AS kind, door_id AS id, name,
+                   NULL AS type, NULL::int AS slot_id, NULL AS slot_name, NULL::int AS ps_id, NULL::boolean AS is_occupied
+            FROM doors
+            UNION ALL SELECT 'lcd', lcd_id, name, NULL, NULL, NULL, NULL, NULL FROM lcds
+            UNION ALL SELECT 'sensor', se.sensor_id, se.name, se.type, sl.slot_id, sl.name, sl.ps_id, sl.is_occupied
+            FROM sensors se JOIN slots sl ON sl.slot_id = se.slot_id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Upserts the manifest for one microcontroller.
+     *
+     * @param sensors each entry is {name, type, slotName}; type may be null
+     * @return ids of the components the device now owns, keyed by name
+     */
+    public ProvisionedComponents upsertManifest(int mcId, int psId, List<String> doorNames, List<String> lcdNames,
+            List<String[]> sensors) {
+        String[] sensorNames = new String[sensors.size()];
+        String[] sensorTypes = new String[sensors.size()];
+        String[] slotNames = new String[sensors.size()];
+        for (int i = 0; i < sensors.size(); i++) {
+            sensorNames[i] = sensors.get(i)[0];
+            sensorTypes[i] = sensors.get(i)[1];
+            slotNames[i] = sensors.get(i)[2];
+        }
+
+        ProvisionedComponents result = new ProvisionedComponents(new HashMap<>(), new HashMap<>(), new HashMap<>(),
+                new ArrayList<>());
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(UPSERT_MANIFEST);
+            ps.setArray(1, con.createArrayOf("varchar", doorNames.toArray()));
+            ps.setInt(2, mcId);
+            ps.setArray(3, con.createArrayOf("varchar", lcdNames.toArray()));
+            ps.setInt(4, mcId);
+            ps.setArray(5, con.createArrayOf("varchar", sensorNames));
+            ps.setArray(6, con.createArrayOf("varchar", sensorTypes));
+            ps.setArray(7, con.createArrayOf("varchar", slotNames));
+            ps.setInt(8, psId);
+            ps.setInt(9, mcId);
+            return ps;
+        }, rs -> {
+            switch (rs.getString("kind")) {
+                case "door" -> result.doors().put(rs.getString("name"), rs.getInt("id"));
+                case "lcd" -> result.lcds().put(rs.getString("name"), rs.getInt("id"));
+                default -> {
+                    result.sensors().put(rs.getString("name"), rs.getInt("id"));
+                    result.sensorSlots().add(new ProvisionedSensor(
+                            rs.getInt("id"),
+                            rs.getString("name"),
+                            rs.getString("type"),
+                            rs.getInt("slot_id"),
+                            rs.getString("slot_name"),
+                            rs.getInt("ps_id"),
+                            rs.getBoolean("is_occupied")));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @param sensorSlots the provisioned sensors with the slot each is bound to
+     */
+    public record ProvisionedComponents(Map<String, Integer> doors, Map<String, Integer> lcds,
+            Map<String, Integer> sensors, List<ProvisionedSensor> sensorSlots) {
+    }
+
+    public record ProvisionedSensor(int sensorId, String name, String type, int slotId, String slotName,
+            int psId, boolean slotOccupied) {
+    }
+}
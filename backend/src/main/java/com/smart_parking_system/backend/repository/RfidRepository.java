@@ -1,13 +1,25 @@
 package com.smart_parking_system.backend.repository;
 
 import com.smart_parking_system.backend.entity.Rfid;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface RfidRepository extends JpaRepository<Rfid, Integer> {
     
     Optional<Rfid> findByRfidCode(String rfidCode);
+
+    /**
+     * Loads the card with a row lock (SELECT ... FOR UPDATE) held until the transaction ends, so
+     * concurrent entry/exit decisions for the same card are serialized.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Rfid r WHERE r.rfidCode = :rfidCode")
+    Optional<Rfid> findByRfidCodeForUpdate(@Param("rfidCode") String rfidCode);
 }
 
 
@@ -0,0 +1,31 @@
+package com.smart_parking_system.backend.scheduler;
+
+import com.smart_parking_system.backend.service.session.ActiveSessionReconciler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActiveSessionReconciliationScheduler {
+
+    private final ActiveSessionReconciler reconciler;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reconcile();
+    }
+
+    @Scheduled(cron = "${entry-log.active-session.reconcile-cron:0 */15 * * * *}")
+    public void reconcile() {
+        try {
+            reconciler.reconcile();
+        } catch (Exception e) {
+            log.error("Active session reconciliation failed", e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.smart_parking_system.backend.scheduler;
+
+import com.smart_parking_system.backend.service.partition.EntryLogPartitionManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EntryLogPartitionScheduler {
+
+    private final EntryLogPartitionManager partitionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${entry-log.partition.maintenance-cron:0 15 3 * * *}")
+    public void maintainPartitions() {
+        try {
+            partitionManager.maintain();
+        } catch (Exception e) {
+            log.error("Entry log partition maintenance failed", e);
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package com.smart_parking_system.backend.service;
 
 import com.smart_parking_system.backend.dto.EntryLogDto;
+import com.smart_parking_system.backend.dto.EntryLogPageDto;
+import com.smart_parking_system.backend.service.export.ExportFormat;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.List;
 
 public interface IEntryLogService {
@@ -10,11 +16,21 @@ public interface IEntryLogService {
 
     List<EntryLogDto> getEntryLogsByParkingSpace(Integer parkingSpaceId);
 
-    EntryLogDto handleEntry(String mcCode, String rfidCode, String imageBase64);
+    EntryLogPageDto getEntryLogPage(Integer parkingSpaceId, Instant from, Instant to, boolean activeOnly,
+                                    String plate, String cursor, Integer limit);
+
+    void exportEntryLogs(Integer parkingSpaceId, Instant from, Instant to, boolean activeOnly, String plate,
+                         ExportFormat format, boolean gzip, OutputStream out) throws IOException;
+
+    int countVehiclesInside(Integer parkingSpaceId);
 
     EntryLogDto handleExit(String mcCode, String rfidCode);
 
     EntryLogDto createPendingEntry(String mcCode, String rfidCode);
 
-    EntryLogDto updateEntryWithImage(String rfidCode, String imageBase64);
+    void admitEntry(String mcCode, String rfidCode);
+
+    void admitExit(String mcCode, String rfidCode);
+
+    EntryLogDto updateEntryWithImage(String rfidCode, Path image);
 }
@@ -3,9 +3,15 @@ package com.smart_parking_system.backend.service;
 import com.smart_parking_system.backend.dto.mqtt.MqttProvisionRequestDto;
 import com.smart_parking_system.backend.dto.mqtt.MqttProvisionResponseDto;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface IMqttProvisionService {
 
     MqttProvisionRequestDto checkForProvisionData(String username, String mcCode, int timeoutSeconds);
 
+    CompletableFuture<MqttProvisionRequestDto> awaitProvisionData(String username, String mcCode, int timeoutSeconds);
+
+    void onProvisionRequest(String mqttUsername, MqttProvisionRequestDto request);
+
     MqttProvisionResponseDto handleProvision(String username, String mcCode, MqttProvisionRequestDto request);
 }
@@ -1,6 +1,13 @@
 package com.smart_parking_system.backend.service;
 
+import com.smart_parking_system.backend.dto.S3PresignedUrlDto;
+
+import java.util.Collection;
+import java.util.List;
+
 public interface IS3Service {
 
     String presignGetUrl(String key);
+
+    List<S3PresignedUrlDto> presignGetUrls(Collection<String> keys);
 }
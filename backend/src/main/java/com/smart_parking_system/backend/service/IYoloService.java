@@ -1,6 +1,13 @@
 package com.smart_parking_system.backend.service;
 
+import java.nio.file.Path;
+
 public interface IYoloService {
 
     String detectLicensePlate(String imageBase64);
+
+    /**
+     * @param timeoutMillis how long to wait for a batched call; direct calls are bounded by the HTTP client timeouts
+     */
+    String recognizePlate(Path image, long timeoutMillis);
 }
@@ -0,0 +1,114 @@
+package com.smart_parking_system.backend.service.export;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.smart_parking_system.backend.repository.EntryLogExportRepository;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Writes exported entry logs one row at a time; nothing but the current row is kept in memory.
+ * Closing the writer flushes and closes the underlying stream.
+ */
+public abstract class EntryLogExportWriter implements Closeable {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public static EntryLogExportWriter open(ExportFormat format, OutputStream out) throws IOException {
+        return switch (format) {
+            case NDJSON -> new Ndjson(out);
+            case CSV -> new Csv(out);
+        };
+    }
+
+    public abstract void write(EntryLogExportRepository.Row row) throws IOException;
+
+    private static final class Ndjson extends EntryLogExportWriter {
+
+        private final JsonGenerator generator;
+
+        Ndjson(OutputStream out) throws IOException {
+            this.generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            // Objects go one per line instead of being separated by the default space
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(EntryLogExportRepository.Row row) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.id());
+            generator.writeNumberField("rfidId", row.rfidId());
+            generator.writeStringField("rfidCode", row.rfidCode());
+            generator.writeStringField("licensePlate", row.licensePlate());
+            generator.writeStringField("licensePlateImageKey", row.licensePlateImageKey());
+            generator.writeStringField("inTime", text(row.inTime()));
+            generator.writeStringField("outTime", text(row.outTime()));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    private static final class Csv extends EntryLogExportWriter {
+
+        private final Writer writer;
+
+        Csv(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("id,rfidId,rfidCode,licensePlate,licensePlateImageKey,inTime,outTime\r\n");
+        }
+
+        @Override
+        public void write(EntryLogExportRepository.Row row) throws IOException {
+            writer.write(Integer.toString(row.id()));
+            writer.write(',');
+            writer.write(Integer.toString(row.rfidId()));
+            writer.write(',');
+            field(row.rfidCode());
+            writer.write(',');
+            field(row.licensePlate());
+            writer.write(',');
+            field(row.licensePlateImageKey());
+            writer.write(',');
+            field(text(row.inTime()));
+            writer.write(',');
+            field(text(row.outTime()));
+            writer.write("\r\n");
+        }
+
+        // RFC 4180: quote fields containing a delimiter, quote or line break, doubling inner quotes
+        private void field(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static String text(Instant instant) {
+        return instant == null ? null : instant.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package com.smart_parking_system.backend.service.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the {@link RestTemplate}s used for outbound HTTP calls. Every external HTTP service gets
+ * its own target: a JDK {@link HttpClient} (and so its own keep-alive connections and I/O
+ * threads), connect and read deadlines, a cap on concurrent requests, and an
+ * {@code outbound.http.requests} timer tagged with the target name.
+ * <p>
+ * The {@link HttpClient} has no per-host connection limit of its own; the cap is what bounds the
+ * connections a target opens. A request waits at most the connect timeout for a free slot.
+ * <p>
+ * Request bodies are streamed, not buffered, so multipart uploads of files stay off the heap.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboundHttpClientFactory {
+
+    /**
+     * @param http2                 negotiate HTTP/2 (ALPN over TLS, h2c upgrade over plain HTTP) and
+     *                              fall back to HTTP/1.1 when the server does not support it
+     * @param maxConcurrentRequests requests in flight at once, each holding its connection until
+     *                              the response is closed
+     */
+    public record Target(String name, Duration connectTimeout, Duration readTimeout, boolean http2,
+                         int maxConcurrentRequests) {
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final List<HttpClient> clients = new CopyOnWriteArrayList<>();
+    private final List<ExecutorService> executors = new CopyOnWriteArrayList<>();
+
+    public RestTemplate restTemplate(Target target) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-" + target.name() + "-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(target.connectTimeout())
+                .version(target.http2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        clients.add(client);
+        executors.add(executor);
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(client);
+        requestFactory.setReadTimeout(target.readTimeout());
+
+        log.info("Outbound HTTP target '{}': connect timeout {}, read timeout {}, {}, at most {} concurrent requests",
+                target.name(), target.connectTimeout(), target.readTimeout(), target.http2() ? "HTTP/2" : "HTTP/1.1",
+                target.maxConcurrentRequests());
+        return new RestTemplate(new TimedClientHttpRequestFactory(requestFactory, target.name(), meterRegistry,
+                target.maxConcurrentRequests(), target.connectTimeout()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.forEach(HttpClient::shutdownNow);
+        executors.forEach(ExecutorService::shutdownNow);
+    }
+}
@@ -0,0 +1,208 @@
+package com.smart_parking_system.backend.service.http;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records the time from sending a request until its response headers arrive, and caps how many
+ * requests to the target are in flight at once.
+ * <p>
+ * The JDK {@code HttpClient} opens as many connections per host as there are concurrent requests,
+ * so the cap is what bounds them: a request holds a permit until its response is closed, and waits
+ * at most {@code acquireTimeout} for one. The wait counts towards the timer; a request that gets
+ * no permit fails with an {@link IOException} and is recorded with status {@code SATURATED}.
+ * <p>
+ * Wraps the request factory rather than adding a {@code ClientHttpRequestInterceptor}: interceptors
+ * make {@code RestTemplate} buffer the whole request body in memory. For the same reason the
+ * wrapped request stays a {@link StreamingHttpOutputMessage}, which is what lets converters such
+ * as the multipart one write straight to the connection.
+ */
+class TimedClientHttpRequestFactory implements ClientHttpRequestFactory {
+
+    private record TimerKey(String method, String status) {
+    }
+
+    private final ClientHttpRequestFactory delegate;
+    private final String target;
+    private final MeterRegistry meterRegistry;
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long acquireTimeoutNanos;
+    private final Map<TimerKey, Timer> timers = new ConcurrentHashMap<>();
+
+    TimedClientHttpRequestFactory(ClientHttpRequestFactory delegate, String target, MeterRegistry meterRegistry,
+            int maxConcurrentRequests, Duration acquireTimeout) {
+        this.delegate = delegate;
+        this.target = target;
+        this.meterRegistry = meterRegistry;
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return new TimedRequest(delegate.createRequest(uri, httpMethod));
+    }
+
+    private Timer timer(HttpMethod method, String status) {
+        return timers.computeIfAbsent(new TimerKey(method.name(), status),
+                key -> Timer.builder("outbound.http.requests")
+                        .description("Outbound HTTP calls, until the response headers arrived")
+                        .tag("target", target)
+                        .tag("method", key.method())
+                        .tag("status", key.status())
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry));
+    }
+
+    private void acquire() throws IOException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new IOException("All " + maxConcurrentRequests + " concurrent requests to '" + target
+                        + "' still in flight after " + TimeUnit.NANOSECONDS.toMillis(acquireTimeoutNanos) + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to call '" + target + "'", e);
+        }
+    }
+
+    private class TimedRequest implements ClientHttpRequest, StreamingHttpOutputMessage {
+
+        private final ClientHttpRequest request;
+
+        TimedRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public void setBody(Body body) {
+            if (request instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body);
+                return;
+            }
+            try {
+                body.writeTo(request.getBody());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            // Streamed bodies are written inside execute(), so the timer includes the upload
+            long start = System.nanoTime();
+            String status = "SATURATED";
+            try {
+                acquire();
+                status = "IO_ERROR";
+                PermitResponse response = send();
+                try {
+                    status = String.valueOf(response.getStatusCode().value());
+                } catch (IOException | RuntimeException e) {
+                    response.close();
+                    throw e;
+                }
+                return response;
+            } finally {
+                timer(request.getMethod(), status).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private PermitResponse send() throws IOException {
+            try {
+                return new PermitResponse(request.execute());
+            } catch (IOException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return request.getAttributes();
+        }
+    }
+
+    // Gives the permit back once the response, and so its connection, is done with
+    private class PermitResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        PermitResponse(ClientHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
@@ -1,41 +1,89 @@
 package com.smart_parking_system.backend.service.impl;
 
 import com.smart_parking_system.backend.dto.EntryLogDto;
+import com.smart_parking_system.backend.dto.EntryLogPageDto;
 import com.smart_parking_system.backend.entity.EntryLog;
-import com.smart_parking_system.backend.entity.Microcontroller;
 import com.smart_parking_system.backend.entity.Rfid;
 import com.smart_parking_system.backend.entity.User;
+import com.smart_parking_system.backend.repository.ActiveSessionRepository;
+import com.smart_parking_system.backend.repository.EntryLogExportRepository;
+import com.smart_parking_system.backend.repository.EntryLogPageQuery;
 import com.smart_parking_system.backend.repository.EntryLogRepository;
-import com.smart_parking_system.backend.repository.MicrocontrollerRepository;
 import com.smart_parking_system.backend.repository.RfidRepository;
 import com.smart_parking_system.backend.repository.UserParkingSpaceRepository;
 import com.smart_parking_system.backend.repository.UserRepository;
 import com.smart_parking_system.backend.service.IEntryLogService;
-import com.smart_parking_system.backend.service.IYoloService;
+import com.smart_parking_system.backend.service.export.EntryLogExportWriter;
+import com.smart_parking_system.backend.service.export.ExportFormat;
+import com.smart_parking_system.backend.service.lpr.LicensePlateRecognitionQueue;
 import com.smart_parking_system.backend.service.realtime.RealtimeEventPublisher;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
+import com.smart_parking_system.backend.service.registry.RfidAdmissionIndex;
+import com.smart_parking_system.backend.service.writebehind.GateDecisionWriteBehind;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EntryLogServiceImpl implements IEntryLogService {
 
+    private static final long PENDING_ENTRY_WAIT_MILLIS = 5000;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     private final EntryLogRepository entryLogRepository;
+    private final EntryLogExportRepository entryLogExportRepository;
     private final UserParkingSpaceRepository userParkingSpaceRepository;
     private final UserRepository userRepository;
-    private final MicrocontrollerRepository microcontrollerRepository;
     private final RfidRepository rfidRepository;
-    private final IYoloService yoloService;
     private final RealtimeEventPublisher eventPublisher;
+    private final DeviceTopologyRegistry topologyRegistry;
+    private final RfidAdmissionIndex admissionIndex;
+    private final GateDecisionWriteBehind gateWriteBehind;
+    private final TransactionTemplate transactionTemplate;
+    private final LicensePlateRecognitionQueue lprQueue;
+    private final ActiveSessionRepository activeSessionRepository;
+
+    // The door only opens once the decision has been taken and written under the card's row lock;
+    // false decides from the in-memory admission index and writes afterwards
+    @Value("${entry-log.gate.confirm-write:true}")
+    private boolean confirmGateWrites;
+
+    @Value("${entry-log.gate.write-timeout-seconds:5}")
+    private int gateWriteTimeoutSeconds;
+
+    private volatile TransactionTemplate gateTransactionTemplate;
+
+    @Value("${entry-log.export.max-concurrent:2}")
+    private int maxConcurrentExports;
+
+    private final AtomicInteger runningExports = new AtomicInteger();
+    private volatile TransactionTemplate exportTransactionTemplate;
 
     @Override
     public EntryLogDto getEntryLogById(Integer id) {
@@ -62,95 +110,149 @@ public class EntryLogServiceImpl implements IEntryLogService {
     }
 
     @Override
-    @Transactional
-    public EntryLogDto handleEntry(String mcCode, String rfidCode, String imageBase64) {
-        Microcontroller mc = microcontrollerRepository.findByMcCode(mcCode)
-                .orElseThrow(() -> new RuntimeException("Microcontroller not found: " + mcCode));
-
-        Rfid rfid = rfidRepository.findByRfidCode(rfidCode)
-                .orElseThrow(() -> new RuntimeException("RFID not found"));
-
-        if (!rfid.getPs().getId().equals(mc.getPs().getId())) {
-            throw new RuntimeException("RFID not usable in this parking space");
-        }
+    @Transactional(readOnly = true)
+    public EntryLogPageDto getEntryLogPage(Integer parkingSpaceId, Instant from, Instant to, boolean activeOnly,
+                                           String plate, String cursor, Integer limit) {
+        User currentUser = getCurrentUser();
+        requireMembership(currentUser.getId(), parkingSpaceId);
 
-        if (Boolean.TRUE.equals(rfid.getCurrentlyUsed())) {
-            throw new RuntimeException("This RFID is currently used");
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        String platePrefix = plate == null || plate.isBlank() ? null : plate.trim();
+
+        Instant afterInTime = null;
+        Integer afterId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                afterInTime = Instant.parse(position[0]);
+                afterId = Integer.valueOf(position[1]);
+            } catch (IllegalArgumentException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                throw new RuntimeException("Invalid cursor");
+            }
         }
 
-        entryLogRepository.findActiveByRfidId(rfid.getId()).ifPresent(active -> {
-            throw new RuntimeException("This RFID already has an active entry log");
-        });
+        // One extra row tells whether there is a next page
+        List<EntryLog> rows = entryLogRepository.findPage(new EntryLogPageQuery(
+                parkingSpaceId, from, to, activeOnly, platePrefix, afterInTime, afterId, pageSize + 1));
 
-        String licensePlate = yoloService.detectLicensePlate(imageBase64);
+        boolean hasMore = rows.size() > pageSize;
+        List<EntryLogDto> items = rows.stream()
+                .limit(pageSize)
+                .map(this::toDto)
+                .collect(Collectors.toList());
 
-        if (licensePlate == null || licensePlate.trim().isEmpty()) {
-            log.warn("Failed to detect license plate for RFID: {}", rfidCode);
-            licensePlate = "UNKNOWN";
+        String nextCursor = null;
+        if (hasMore) {
+            EntryLogDto last = items.get(items.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((last.getInTime() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
         }
+        return new EntryLogPageDto(items, nextCursor);
+    }
 
-        EntryLog entryLog = new EntryLog();
-        entryLog.setRfid(rfid);
-        entryLog.setLicensePlate(licensePlate);
-        entryLog.setInTime(Instant.now());
-        entryLog.setOutTime(null);
+    /**
+     * Streams the logs to {@code out}. An export holds a pooled connection while the client
+     * downloads, so at most {@code entry-log.export.max-concurrent} run at once; beyond that the
+     * call is rejected rather than queued.
+     *
+     * @throws RejectedExecutionException if too many exports are running
+     */
+    @Override
+    public void exportEntryLogs(Integer parkingSpaceId, Instant from, Instant to, boolean activeOnly, String plate,
+                                ExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        User currentUser = getCurrentUser();
+        requireMembership(currentUser.getId(), parkingSpaceId);
 
-        rfid.setCurrentlyUsed(true);
-        rfidRepository.save(rfid);
+        String platePrefix = plate == null || plate.isBlank() ? null : plate.trim();
+        EntryLogPageQuery query = new EntryLogPageQuery(
+                parkingSpaceId, from, to, activeOnly, platePrefix, null, null, 0);
 
-        // Broadcast RFID status change via WebSocket
-        eventPublisher.publishRfidChanged(rfid.getId(), rfid.getRfidCode(), true, rfid.getPs().getId());
+        if (runningExports.incrementAndGet() > maxConcurrentExports) {
+            runningExports.decrementAndGet();
+            throw new RejectedExecutionException("Too many entry log exports running, try again later");
+        }
+        long start = System.currentTimeMillis();
+        AtomicLong rows = new AtomicLong();
+        try (EntryLogExportWriter writer = EntryLogExportWriter.open(format, gzip ? new GZIPOutputStream(out) : out)) {
+            // The read-only transaction keeps the database cursor open while rows are written to the client
+            exportTransactionTemplate().executeWithoutResult(status -> entryLogExportRepository.forEach(query, row -> {
+                try {
+                    writer.write(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows.incrementAndGet();
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            runningExports.decrementAndGet();
+        }
+        log.info("Exported {} entry logs of parking space {} as {} in {} ms",
+                rows.get(), parkingSpaceId, format, System.currentTimeMillis() - start);
+    }
 
-        EntryLog saved = entryLogRepository.save(entryLog);
-        entryLogRepository.flush();
+    private TransactionTemplate exportTransactionTemplate() {
+        TransactionTemplate template = exportTransactionTemplate;
+        if (template == null) {
+            template = new TransactionTemplate(transactionTemplate.getTransactionManager());
+            template.setReadOnly(true);
+            exportTransactionTemplate = template;
+        }
+        return template;
+    }
 
-        // Broadcast entry log event via WebSocket
-        eventPublisher.publishVehicleEntered(saved.getId(), saved.getLicensePlate(), rfidCode, rfid.getPs().getId());
+    @Override
+    public int countVehiclesInside(Integer parkingSpaceId) {
+        User currentUser = getCurrentUser();
+        requireMembership(currentUser.getId(), parkingSpaceId);
 
-        return toDto(saved);
+        return activeSessionRepository.countInside(parkingSpaceId);
     }
 
     @Override
     @Transactional
     public EntryLogDto handleExit(String mcCode, String rfidCode) {
-        Microcontroller mc = microcontrollerRepository.findByMcCode(mcCode)
-                .orElseThrow(() -> new RuntimeException("Microcontroller not found: " + mcCode));
+        DeviceTopologyRegistry.Device device = requireDevice(mcCode);
 
-        Rfid rfid = rfidRepository.findByRfidCode(rfidCode)
+        Rfid rfid = rfidRepository.findByRfidCodeForUpdate(rfidCode)
                 .orElseThrow(() -> new RuntimeException("RFID not found"));
 
-        if (!rfid.getPs().getId().equals(mc.getPs().getId())) {
+        if (rfid.getPs().getId() != device.psId()) {
             throw new RuntimeException("RFID not usable in this parking space");
         }
 
-        EntryLog active = entryLogRepository.findActiveByRfidId(rfid.getId())
+        ActiveSessionRepository.ActiveSession session = activeSessionRepository.close(rfid.getId())
+                .orElseThrow(() -> new RuntimeException("No active entry log for this RFID"));
+        EntryLog active = entryLogRepository.findByIdAndInTime(session.logId(), session.inTime())
                 .orElseThrow(() -> new RuntimeException("No active entry log for this RFID"));
 
-        active.setOutTime(Instant.now());
+        // Updated by (id, inTime) rather than through the entity so only the log's own partition is touched
+        Instant outTime = now();
+        if (entryLogRepository.close(active.getId(), active.getInTime(), outTime) == 0) {
+            throw new RuntimeException("No active entry log for this RFID");
+        }
 
         rfid.setCurrentlyUsed(false);
         rfidRepository.save(rfid);
 
         eventPublisher.publishRfidChanged(rfid.getId(), rfid.getRfidCode(), false, rfid.getPs().getId());
+        eventPublisher.publishVehicleExited(active.getId(), active.getLicensePlate(), rfidCode, rfid.getPs().getId());
 
-        EntryLog saved = entryLogRepository.save(active);
-        entryLogRepository.flush();
-
-        eventPublisher.publishVehicleExited(saved.getId(), saved.getLicensePlate(), rfidCode, rfid.getPs().getId());
-
-        return toDto(saved);
+        EntryLogDto dto = toDto(active);
+        dto.setOutTime(outTime);
+        return dto;
     }
 
     @Override
     @Transactional
     public EntryLogDto createPendingEntry(String mcCode, String rfidCode) {
-        Microcontroller mc = microcontrollerRepository.findByMcCode(mcCode)
-                .orElseThrow(() -> new RuntimeException("Microcontroller not found: " + mcCode));
+        DeviceTopologyRegistry.Device device = requireDevice(mcCode);
 
-        Rfid rfid = rfidRepository.findByRfidCode(rfidCode)
+        Rfid rfid = rfidRepository.findByRfidCodeForUpdate(rfidCode)
                 .orElseThrow(() -> new RuntimeException("RFID not found"));
 
-        if (!rfid.getPs().getId().equals(mc.getPs().getId())) {
+        if (rfid.getPs().getId() != device.psId()) {
             throw new RuntimeException("RFID not usable in this parking space");
         }
 
@@ -158,15 +260,16 @@ public class EntryLogServiceImpl implements IEntryLogService {
             throw new RuntimeException("This RFID is currently used");
         }
 
-        entryLogRepository.findActiveByRfidId(rfid.getId()).ifPresent(active -> {
+        if (activeSessionRepository.findByRfidId(rfid.getId()).isPresent()) {
             throw new RuntimeException("This RFID already has an active entry log");
-        });
+        }
 
         EntryLog entryLog = new EntryLog();
         entryLog.setRfid(rfid);
+        entryLog.setPs(rfid.getPs());
         entryLog.setLicensePlate(null);
         entryLog.setLicensePlateImageKey(null);
-        entryLog.setInTime(Instant.now());
+        entryLog.setInTime(now());
         entryLog.setOutTime(null);
 
         rfid.setCurrentlyUsed(true);
@@ -174,36 +277,128 @@ public class EntryLogServiceImpl implements IEntryLogService {
 
         eventPublisher.publishRfidChanged(rfid.getId(), rfid.getRfidCode(), true, rfid.getPs().getId());
 
-        EntryLog saved = entryLogRepository.save(entryLog);
-        entryLogRepository.flush();
+        EntryLog saved = saveActiveEntry(entryLog);
 
         eventPublisher.publishVehicleEntered(saved.getId(), saved.getLicensePlate(), rfidCode, rfid.getPs().getId());
 
         return toDto(saved);
     }
 
+    /**
+     * Admits a card at the gate. By default the decision is taken and committed under the card's row
+     * lock on the calling thread, within {@code write-timeout-seconds}; a transaction that runs out of
+     * time rolls back, so the card stays as it was whenever no door command follows. With
+     * {@code confirm-write=false} the in-memory index decides and the write is queued behind it.
+     */
     @Override
-    @Transactional
-    public EntryLogDto updateEntryWithImage(String rfidCode, String imageBase64) {
-        Rfid rfid = rfidRepository.findByRfidCode(rfidCode)
-                .orElseThrow(() -> new RuntimeException("RFID not found"));
+    public void admitEntry(String mcCode, String rfidCode) {
+        if (confirmGateWrites) {
+            gateTransactionTemplate().executeWithoutResult(status -> createPendingEntry(mcCode, rfidCode));
+            return;
+        }
+        DeviceTopologyRegistry.Device device = requireDevice(mcCode);
+        admissionIndex.admit(rfidCode, device.psId(), true,
+                () -> gateWriteBehind.submit(rfidCode,
+                        () -> transactionTemplate.execute(status -> createPendingEntry(mcCode, rfidCode)).getId()));
+    }
 
-        EntryLog entryLog = entryLogRepository.findActiveByRfidId(rfid.getId())
-                .orElseThrow(() -> new RuntimeException("No pending entry log for this RFID"));
+    @Override
+    public void admitExit(String mcCode, String rfidCode) {
+        if (confirmGateWrites) {
+            gateTransactionTemplate().executeWithoutResult(status -> handleExit(mcCode, rfidCode));
+            return;
+        }
+        DeviceTopologyRegistry.Device device = requireDevice(mcCode);
+        admissionIndex.admit(rfidCode, device.psId(), false,
+                () -> gateWriteBehind.submit(rfidCode,
+                        () -> transactionTemplate.execute(status -> handleExit(mcCode, rfidCode)).getId()));
+    }
 
-        String licensePlate = yoloService.detectLicensePlate(imageBase64);
+    // The timeout bounds every statement of the transaction, including the wait for the card's row lock
+    private TransactionTemplate gateTransactionTemplate() {
+        TransactionTemplate template = gateTransactionTemplate;
+        if (template == null) {
+            template = new TransactionTemplate(transactionTemplate.getTransactionManager());
+            template.setTimeout(gateWriteTimeoutSeconds);
+            gateTransactionTemplate = template;
+        }
+        return template;
+    }
 
+    @Override
+    public EntryLogDto updateEntryWithImage(String rfidCode, Path image) {
+        // The camera usually uploads right after the gate opened; make sure the entry has been written
+        admissionIndex.awaitPersisted(rfidCode, PENDING_ENTRY_WAIT_MILLIS);
+
+        EntryLogDto pending = transactionTemplate.execute(status -> {
+            Rfid rfid = rfidRepository.findByRfidCode(rfidCode)
+                    .orElseThrow(() -> new RuntimeException("RFID not found"));
+
+            EntryLog entryLog = findActiveEntry(rfid.getId())
+                    .orElseThrow(() -> new RuntimeException("No pending entry log for this RFID"));
+
+            return toDto(entryLog);
+        });
+
+        // Recognition runs on the LPR workers; no connection is held while the LPR server works
+        lprQueue.submit(rfidCode, image).thenAccept(licensePlate -> recordLicensePlate(pending, licensePlate));
+
+        return pending;
+    }
+
+    private void recordLicensePlate(EntryLogDto entry, String licensePlate) {
         if (licensePlate == null || licensePlate.trim().isEmpty()) {
-            log.warn("Failed to detect license plate for RFID: {}", rfidCode);
+            log.warn("Failed to detect license plate for RFID: {}", entry.getRfidCode());
             licensePlate = "UNKNOWN";
         }
 
-        entryLog.setLicensePlate(licensePlate);
+        String plate = licensePlate;
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    entryLogRepository.updateLicensePlate(entry.getId(), entry.getInTime(), plate));
 
-        EntryLog saved = entryLogRepository.save(entryLog);
-        entryLogRepository.flush();
+            eventPublisher.publishLicensePlateRecognized(entry.getId(), plate, entry.getRfidCode(),
+                    entry.getParkingSpaceId());
 
-        return toDto(saved);
+            log.info("License plate recorded for entryLogId: {}, licensePlate: {}", entry.getId(), plate);
+        } catch (Exception e) {
+            log.error("Failed to record license plate for entryLogId: {}", entry.getId(), e);
+        }
+    }
+
+    // The session names the open log's (id, inTime), so the log is read from its own partition only
+    private Optional<EntryLog> findActiveEntry(Integer rfidId) {
+        return activeSessionRepository.findByRfidId(rfidId)
+                .flatMap(session -> entryLogRepository.findByIdAndInTime(session.logId(), session.inTime()));
+    }
+
+    private EntryLog saveActiveEntry(EntryLog entryLog) {
+        EntryLog saved;
+        try {
+            saved = entryLogRepository.save(entryLog);
+            entryLogRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            // entry_log_pYYYY_MM_active_rfid: another session for this card was opened concurrently
+            throw new RuntimeException("This RFID already has an active entry log");
+        }
+        if (!activeSessionRepository.open(saved.getRfid().getId(), saved.getId(), saved.getInTime(),
+                saved.getPs().getId())) {
+            throw new RuntimeException("This RFID already has an active entry log");
+        }
+        return saved;
+    }
+
+    // entry_log keeps microseconds; truncating here keeps (id, inTime) identical in memory and in the database
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private DeviceTopologyRegistry.Device requireDevice(String mcCode) {
+        DeviceTopologyRegistry.Device device = topologyRegistry.device(mcCode);
+        if (device == null) {
+            throw new RuntimeException("Microcontroller not found: " + mcCode);
+        }
+        return device;
     }
 
     private void requireMembership(Integer userId, Integer parkingSpaceId) {
@@ -230,9 +425,9 @@ public class EntryLogServiceImpl implements IEntryLogService {
         if (el.getRfid() != null) {
             dto.setRfidId(el.getRfid().getId());
             dto.setRfidCode(el.getRfid().getRfidCode());
-            if (el.getRfid().getPs() != null) {
-                dto.setParkingSpaceId(el.getRfid().getPs().getId());
-            }
+        }
+        if (el.getPs() != null) {
+            dto.setParkingSpaceId(el.getPs().getId());
         }
 
         return dto;
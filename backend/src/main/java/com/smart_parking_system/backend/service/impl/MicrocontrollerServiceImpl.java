@@ -13,6 +13,8 @@ import com.smart_parking_system.backend.repository.UserParkingSpaceRepository;
 import com.smart_parking_system.backend.repository.UserRepository;
 import com.smart_parking_system.backend.service.IMicrocontrollerService;
 import com.smart_parking_system.backend.service.IMqttCredentialService;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
+import com.smart_parking_system.backend.service.writebehind.MicrocontrollerHeartbeatWriteBehind;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -34,6 +36,8 @@ public class MicrocontrollerServiceImpl implements IMicrocontrollerService {
     private final UserParkingSpaceRepository userParkingSpaceRepository;
     private final UserRepository userRepository;
     private final IMqttCredentialService mqttCredentialService;
+    private final DeviceTopologyRegistry topologyRegistry;
+    private final MicrocontrollerHeartbeatWriteBehind heartbeatWriteBehind;
 
     @Override
     @Transactional
@@ -65,6 +69,8 @@ public class MicrocontrollerServiceImpl implements IMicrocontrollerService {
         log.info("Microcontroller created: {} with MQTT username: {}. ESP32 can connect using provided credentials.", 
                 requestDto.getMcCode(), mqttCredentials.getMqttUsername());
 
+        topologyRegistry.invalidate();
+
         MicrocontrollerDto dto = toDto(saved);
         // Include MQTT credentials in response (one-time display)
         dto.setMqttCredentials(mqttCredentials);
@@ -130,6 +136,8 @@ public class MicrocontrollerServiceImpl implements IMicrocontrollerService {
         mqttCredentialService.revokeCredentials(mc);
 
         microcontrollerRepository.delete(mc);
+        heartbeatWriteBehind.forget(id);
+        topologyRegistry.invalidate();
         log.info("Microcontroller deleted: {} and MQTT credentials revoked", mc.getMcCode());
     }
 
@@ -147,6 +155,7 @@ public class MicrocontrollerServiceImpl implements IMicrocontrollerService {
         requireMembership(currentUser.getId(), mc.getPs().getId());
 
         MqttCredentialsResponseDto newCredentials = mqttCredentialService.regenerateCredentials(mc, currentUser.getUsername());
+        topologyRegistry.invalidate();
         
         log.info("MQTT credentials regenerated for device: {}", mc.getMcCode());
         
@@ -166,6 +175,7 @@ public class MicrocontrollerServiceImpl implements IMicrocontrollerService {
         requireMembership(currentUser.getId(), mc.getPs().getId());
 
         mqttCredentialService.revokeCredentials(mc);
+        topologyRegistry.invalidate();
         
         log.info("MQTT credentials revoked for device: {}", mc.getMcCode());
     }
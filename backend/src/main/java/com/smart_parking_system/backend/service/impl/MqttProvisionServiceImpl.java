@@ -2,30 +2,28 @@ package com.smart_parking_system.backend.service.impl;
 
 import com.smart_parking_system.backend.dto.mqtt.MqttProvisionRequestDto;
 import com.smart_parking_system.backend.dto.mqtt.MqttProvisionResponseDto;
-import com.smart_parking_system.backend.entity.Door;
-import com.smart_parking_system.backend.entity.Lcd;
-import com.smart_parking_system.backend.entity.Microcontroller;
-import com.smart_parking_system.backend.entity.Sensor;
-import com.smart_parking_system.backend.entity.Slot;
-import com.smart_parking_system.backend.repository.DoorRepository;
-import com.smart_parking_system.backend.repository.LcdRepository;
-import com.smart_parking_system.backend.repository.MicrocontrollerRepository;
-import com.smart_parking_system.backend.repository.SensorRepository;
-import com.smart_parking_system.backend.repository.SlotRepository;
+import com.smart_parking_system.backend.repository.ProvisioningRepository;
 import com.smart_parking_system.backend.service.IMqttProvisionService;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.eclipse.paho.client.mqttv3.*;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.integration.mqtt.core.MqttPahoClientFactory;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 @Slf4j
@@ -33,140 +31,118 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class MqttProvisionServiceImpl implements IMqttProvisionService {
 
-    private final MicrocontrollerRepository microcontrollerRepository;
-    private final DoorRepository doorRepository;
-    private final LcdRepository lcdRepository;
-    private final SensorRepository sensorRepository;
-    private final SlotRepository slotRepository;
-    private final MqttPahoClientFactory mqttClientFactory;
+    private final ProvisioningRepository provisioningRepository;
     private final ObjectMapper objectMapper;
     private final MessageChannel mqttOutboundChannel;
+    private final DeviceTopologyRegistry topologyRegistry;
+    private final TransactionTemplate transactionTemplate;
 
-    @Value("${mqtt.client-id:sps-backend}")
-    private String clientId;
+    private final Map<String, CachedProvision> provisionCache = new ConcurrentHashMap<>();
+    private final Map<String, Set<CompletableFuture<MqttProvisionRequestDto>>> provisionWaiters =
+            new ConcurrentHashMap<>();
 
     @Value("${mqtt.base-topic:sps}")
     private String baseTopic;
 
     @Override
     public MqttProvisionRequestDto checkForProvisionData(String username, String mcCode, int timeoutSeconds) {
-        String mqttUsername = username + "_" + mcCode;
-        String topic = baseTopic + "/" + mqttUsername + "/provision/request";
-        CompletableFuture<String> messageFuture = new CompletableFuture<>();
-
-        IMqttClient client = null;
         try {
-            client = mqttClientFactory.getClientInstance(clientId + "-provision-check-" + mcCode, topic);
-
-            final IMqttClient finalClient = client;
-
-            client.setCallback(new MqttCallback() {
-                @Override
-                public void connectionLost(Throwable cause) {
-                    log.warn("Connection lost during provision check for mcCode: {}", mcCode);
-                    messageFuture.completeExceptionally(cause);
-                }
-
-                @Override
-                public void messageArrived(String topic, MqttMessage message) {
-                    String payload = new String(message.getPayload());
-                    log.info("Received provision message for mcCode: {}", mcCode);
-                    messageFuture.complete(payload);
-
-                    try {
-                        finalClient.disconnect();
-                    } catch (MqttException e) {
-                        log.warn("Error disconnecting after receiving message", e);
-                    }
-                }
+            return awaitProvisionData(username, mcCode, timeoutSeconds).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for provision data", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to check for provision data", e.getCause());
+        }
+    }
 
-                @Override
-                public void deliveryComplete(IMqttDeliveryToken token) {
-                }
+    /**
+     * Registers a waiter for the device's next provision request. The future completes when the
+     * shared inbound subscription delivers one ({@link #onProvisionRequest}), or with null after
+     * {@code timeoutSeconds}. No broker connection is opened per call.
+     */
+    @Override
+    public CompletableFuture<MqttProvisionRequestDto> awaitProvisionData(String username, String mcCode,
+            int timeoutSeconds) {
+        String mqttUsername = username + "_" + mcCode;
+        CompletableFuture<MqttProvisionRequestDto> waiter = new CompletableFuture<>();
+        provisionWaiters.computeIfAbsent(mqttUsername, key -> ConcurrentHashMap.newKeySet()).add(waiter);
+
+        waiter.completeOnTimeout(null, timeoutSeconds, TimeUnit.SECONDS);
+        waiter.whenComplete((request, error) -> {
+            provisionWaiters.computeIfPresent(mqttUsername, (key, waiters) -> {
+                waiters.remove(waiter);
+                return waiters.isEmpty() ? null : waiters;
             });
-
-            if (!client.isConnected()) {
-                client.connect(mqttClientFactory.getConnectionOptions());
+            if (request == null && error == null) {
+                log.info("No provision data found for mcCode: {} (timeout)", mcCode);
             }
+        });
+        return waiter;
+    }
 
-            client.subscribe(topic, 1);
-
-            String payload = messageFuture.get(timeoutSeconds, TimeUnit.SECONDS);
-
-            if (payload != null && !payload.trim().isEmpty()) {
-                return objectMapper.readValue(payload, MqttProvisionRequestDto.class);
-            }
-
-            return null;
-
-        } catch (java.util.concurrent.TimeoutException e) {
-            log.info("No provision data found for mcCode: {} (timeout)", mcCode);
-            return null;
-        } catch (Exception e) {
-            log.error("Error checking for provision data for mcCode: {}", mcCode, e);
-            throw new RuntimeException("Failed to check for provision data", e);
-        } finally {
-            if (client != null && client.isConnected()) {
-                try {
-                    client.disconnect();
-                    client.close();
-                } catch (MqttException e) {
-                    log.warn("Error disconnecting MQTT client", e);
-                }
-            }
+    @Override
+    public void onProvisionRequest(String mqttUsername, MqttProvisionRequestDto request) {
+        Set<CompletableFuture<MqttProvisionRequestDto>> waiters = provisionWaiters.remove(mqttUsername);
+        if (waiters == null) {
+            return;
+        }
+        log.info("Delivering provision request from {} to {} waiter(s)", mqttUsername, waiters.size());
+        for (CompletableFuture<MqttProvisionRequestDto> waiter : waiters) {
+            waiter.complete(request);
         }
     }
 
     @Override
-    @Transactional
     public MqttProvisionResponseDto handleProvision(String username, String mcCode, MqttProvisionRequestDto request) {
-        Microcontroller mc = microcontrollerRepository.findByMcCode(mcCode)
-                .orElseThrow(() -> new RuntimeException("Microcontroller not found with mcCode: " + mcCode));
-
-        List<MqttProvisionResponseDto.ComponentResponseDto> doorResponses = new ArrayList<>();
-        List<MqttProvisionResponseDto.ComponentResponseDto> lcdResponses = new ArrayList<>();
-        List<MqttProvisionResponseDto.ComponentResponseDto> sensorResponses = new ArrayList<>();
-
-        if (request.getDoors() != null) {
-            for (MqttProvisionRequestDto.ComponentDto doorDto : request.getDoors()) {
-                Door door = findOrCreateDoor(mc, doorDto.getName());
-                doorRepository.saveAndFlush(door);
-                doorResponses.add(new MqttProvisionResponseDto.ComponentResponseDto(door.getId(), door.getName()));
-            }
-        }
-
-        if (request.getLcds() != null) {
-            for (MqttProvisionRequestDto.ComponentDto lcdDto : request.getLcds()) {
-                Lcd lcd = findOrCreateLcd(mc, lcdDto.getName());
-                lcdRepository.saveAndFlush(lcd);
-                lcdResponses.add(new MqttProvisionResponseDto.ComponentResponseDto(lcd.getId(), lcd.getName()));
-            }
+        DeviceTopologyRegistry.Device device = topologyRegistry.device(mcCode);
+        if (device == null) {
+            throw new RuntimeException("Microcontroller not found with mcCode: " + mcCode);
         }
 
-        if (request.getSensors() != null) {
-            for (MqttProvisionRequestDto.SensorComponentDto sensorDto : request.getSensors()) {
-                if (sensorDto.getSlotName() == null || sensorDto.getSlotName().trim().isEmpty()) {
-                    continue;
-                }
-
-                Slot slot = findOrCreateSlot(mc, sensorDto.getSlotName());
-                if (slot == null) {
-                    continue;
-                }
-
-                Sensor sensor = findOrCreateSensor(mc, sensorDto, slot);
-                sensorRepository.saveAndFlush(sensor);
-                sensorResponses
-                        .add(new MqttProvisionResponseDto.ComponentResponseDto(sensor.getId(), sensor.getName()));
-            }
+        Manifest manifest = normalize(request);
+        String manifestHash = request.getManifestHash() != null && !request.getManifestHash().isBlank()
+                ? request.getManifestHash()
+                : manifest.hash();
+
+        // Unchanged manifest and no topology change since: answer without touching the database
+        CachedProvision cached = provisionCache.get(mcCode);
+        if (cached != null && cached.manifestHash().equals(manifestHash)
+                && cached.generation() == topologyRegistry.generation()) {
+            log.debug("Provision manifest for mcCode {} unchanged, replying from cache", mcCode);
+            publishProvisionResponse(username, mcCode, cached.response());
+            return cached.response();
         }
 
-        MqttProvisionResponseDto response = new MqttProvisionResponseDto(
-                true,
-                "Provisioning completed successfully",
-                doorResponses,
-                lcdResponses,
-                sensorResponses);
+        MqttProvisionResponseDto response = transactionTemplate.execute(status -> {
+            ProvisioningRepository.ProvisionedComponents provisioned = provisioningRepository.upsertManifest(
+                    device.mcId(), device.psId(), manifest.doors(), manifest.lcds(), manifest.sensors());
+
+            List<MqttProvisionResponseDto.ComponentResponseDto> doorResponses =
+                    toResponses("Door", manifest.doors(), provisioned.doors());
+            List<MqttProvisionResponseDto.ComponentResponseDto> lcdResponses =
+                    toResponses("LCD", manifest.lcds(), provisioned.lcds());
+            List<MqttProvisionResponseDto.ComponentResponseDto> sensorResponses =
+                    toResponses("Sensor", manifest.sensors().stream().map(sensor -> sensor[0]).toList(),
+                            provisioned.sensors());
+
+            // Provisioning only binds sensors; the rest of the topology is left as loaded
+            topologyRegistry.putSensorsAfterCommit(provisioned.sensorSlots().stream()
+                    .map(sensor -> new DeviceTopologyRegistry.SensorBinding(sensor.sensorId(), sensor.name(),
+                            sensor.type(), sensor.slotId(), sensor.slotName(), sensor.psId(), sensor.slotOccupied(),
+                            device))
+                    .toList());
+
+            return new MqttProvisionResponseDto(
+                    true,
+                    "Provisioning completed successfully",
+                    doorResponses,
+                    lcdResponses,
+                    sensorResponses);
+        });
+
+        // The registry has been updated by now (after commit), so this is the generation the response matches
+        provisionCache.put(mcCode, new CachedProvision(manifestHash, topologyRegistry.generation(), response));
 
         publishProvisionResponse(username, mcCode, response);
 
@@ -190,112 +166,75 @@ public class MqttProvisionServiceImpl implements IMqttProvisionService {
         }
     }
 
-    private Door findOrCreateDoor(Microcontroller mc, String name) {
-        String normalizedName = name == null ? null : name.trim();
-        if (normalizedName == null || normalizedName.isEmpty()) {
-            throw new RuntimeException("Door name is required");
+    private List<MqttProvisionResponseDto.ComponentResponseDto> toResponses(String kind, List<String> names,
+            Map<String, Integer> ids) {
+        List<MqttProvisionResponseDto.ComponentResponseDto> responses = new ArrayList<>(names.size());
+        for (String name : names) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                // Throwing rolls back the whole manifest, as the per-row version did
+                throw new RuntimeException(kind + " name already exists and is assigned to another "
+                        + ("Sensor".equals(kind) ? "microcontroller or slot: " : "microcontroller: ") + name);
+            }
+            responses.add(new MqttProvisionResponseDto.ComponentResponseDto(id, name));
         }
-
-        return doorRepository.findByName(normalizedName)
-                .map(existing -> {
-                    if (existing.getMc() != null && !existing.getMc().getId().equals(mc.getId())) {
-                        throw new RuntimeException(
-                                "Door name already exists and is assigned to another microcontroller: "
-                                        + normalizedName);
-                    }
-                    if (existing.getMc() == null) {
-                        existing.setMc(mc);
-                    }
-                    return existing;
-                })
-                .orElseGet(() -> {
-                    Door door = new Door();
-                    door.setName(normalizedName);
-                    door.setMc(mc);
-                    door.setIsOpened(false);
-                    return door;
-                });
+        return responses;
     }
 
-    private Lcd findOrCreateLcd(Microcontroller mc, String name) {
-        String normalizedName = name == null ? null : name.trim();
-        if (normalizedName == null || normalizedName.isEmpty()) {
-            throw new RuntimeException("LCD name is required");
+    private Manifest normalize(MqttProvisionRequestDto request) {
+        List<String> doors = new ArrayList<>();
+        if (request.getDoors() != null) {
+            for (MqttProvisionRequestDto.ComponentDto door : request.getDoors()) {
+                doors.add(requireName(door.getName(), "Door"));
+            }
         }
 
-        return lcdRepository.findByName(normalizedName)
-                .map(existing -> {
-                    if (existing.getMc() != null && !existing.getMc().getId().equals(mc.getId())) {
-                        throw new RuntimeException(
-                                "LCD name already exists and is assigned to another microcontroller: "
-                                        + normalizedName);
-                    }
-                    if (existing.getMc() == null) {
-                        existing.setMc(mc);
-                    }
-                    return existing;
-                })
-                .orElseGet(() -> {
-                    Lcd lcd = new Lcd();
-                    lcd.setName(normalizedName);
-                    lcd.setMc(mc);
-                    lcd.setDisplayText("");
-                    return lcd;
-                });
-    }
+        List<String> lcds = new ArrayList<>();
+        if (request.getLcds() != null) {
+            for (MqttProvisionRequestDto.ComponentDto lcd : request.getLcds()) {
+                lcds.add(requireName(lcd.getName(), "LCD"));
+            }
+        }
 
-    private Slot findOrCreateSlot(Microcontroller mc, String slotName) {
-        if (mc.getPs() == null) {
-            return null;
+        List<String[]> sensors = new ArrayList<>();
+        if (request.getSensors() != null) {
+            for (MqttProvisionRequestDto.SensorComponentDto sensor : request.getSensors()) {
+                if (sensor.getSlotName() == null || sensor.getSlotName().trim().isEmpty()) {
+                    continue;
+                }
+                sensors.add(new String[] { requireName(sensor.getName(), "Sensor"), sensor.getType(),
+                        sensor.getSlotName() });
+            }
         }
 
-        return slotRepository.findByName(slotName)
-                .orElseGet(() -> {
-                    Slot slot = new Slot();
-                    slot.setName(slotName);
-                    slot.setPs(mc.getPs());
-                    slot.setIsOccupied(false);
-                    slotRepository.save(slot);
-                    return slot;
-                });
+        return new Manifest(doors, lcds, sensors);
     }
 
-    private Sensor findOrCreateSensor(Microcontroller mc, MqttProvisionRequestDto.SensorComponentDto sensorDto,
-            Slot slot) {
-        String normalizedName = sensorDto.getName() == null ? null : sensorDto.getName().trim();
+    private static String requireName(String name, String kind) {
+        String normalizedName = name == null ? null : name.trim();
         if (normalizedName == null || normalizedName.isEmpty()) {
-            throw new RuntimeException("Sensor name is required");
+            throw new RuntimeException(kind + " name is required");
         }
+        return normalizedName;
+    }
+
+    private record Manifest(List<String> doors, List<String> lcds, List<String[]> sensors) {
+
+        private String hash() {
+            StringBuilder canonical = new StringBuilder();
+            doors.forEach(name -> canonical.append("d:").append(name).append('\n'));
+            lcds.forEach(name -> canonical.append("l:").append(name).append('\n'));
+            sensors.forEach(sensor -> canonical.append("s:").append(sensor[0]).append('|')
+                    .append(sensor[1]).append('|').append(sensor[2]).append('\n'));
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
 
-        return sensorRepository.findByName(normalizedName)
-                .map(existing -> {
-                    if (existing.getMc() != null && !existing.getMc().getId().equals(mc.getId())) {
-                        throw new RuntimeException(
-                                "Sensor name already exists and is assigned to another microcontroller: "
-                                        + normalizedName);
-                    }
-                    if (existing.getSlot() != null && !existing.getSlot().getId().equals(slot.getId())) {
-                        throw new RuntimeException(
-                                "Sensor name already exists and is assigned to another slot: " + normalizedName);
-                    }
-                    if (existing.getMc() == null) {
-                        existing.setMc(mc);
-                    }
-                    if (existing.getSlot() == null) {
-                        existing.setSlot(slot);
-                    }
-                    if (sensorDto.getType() != null) {
-                        existing.setType(sensorDto.getType());
-                    }
-                    return existing;
-                })
-                .orElseGet(() -> {
-                    Sensor sensor = new Sensor();
-                    sensor.setName(normalizedName);
-                    sensor.setType(sensorDto.getType());
-                    sensor.setMc(mc);
-                    sensor.setSlot(slot);
-                    return sensor;
-                });
+    private record CachedProvision(String manifestHash, long generation, MqttProvisionResponseDto response) {
     }
 }
@@ -2,72 +2,59 @@ package com.smart_parking_system.backend.service.impl;
 
 import com.smart_parking_system.backend.dto.SensorDto;
 import com.smart_parking_system.backend.dto.mqtt.MqttSensorStatusDto;
-import com.smart_parking_system.backend.entity.Sensor;
-import com.smart_parking_system.backend.entity.Slot;
-import com.smart_parking_system.backend.repository.SensorRepository;
-import com.smart_parking_system.backend.repository.SlotRepository;
 import com.smart_parking_system.backend.service.IMqttSensorService;
 import com.smart_parking_system.backend.service.realtime.RealtimeEventPublisher;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry.SensorBinding;
+import com.smart_parking_system.backend.service.writebehind.SlotOccupancyWriteBehind;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 @Service
 @RequiredArgsConstructor
 public class MqttSensorServiceImpl implements IMqttSensorService {
 
-    private final SensorRepository sensorRepository;
-    private final SlotRepository slotRepository;
+    private final DeviceTopologyRegistry topologyRegistry;
     private final org.springframework.messaging.simp.SimpMessagingTemplate messagingTemplate;
     private final RealtimeEventPublisher eventPublisher;
+    private final SlotOccupancyWriteBehind slotOccupancyWriteBehind;
 
     @Override
-    @Transactional
     public SensorDto handleSensorStatus(String mcCode, MqttSensorStatusDto status) {
-        Sensor sensor = sensorRepository.findById(status.getSensorId())
-                .orElseThrow(() -> new RuntimeException("Sensor not found with id: " + status.getSensorId()));
+        if (status.getSensorId() == null) {
+            throw new RuntimeException("Sensor id is required");
+        }
+        SensorBinding sensor = topologyRegistry.sensor(status.getSensorId());
+        if (sensor == null) {
+            throw new RuntimeException("Sensor not found with id: " + status.getSensorId());
+        }
 
-        if (sensor.getMc() == null || sensor.getMc().getMcCode() == null
-                || !sensor.getMc().getMcCode().equals(mcCode)) {
+        if (!sensor.device().mcCode().equals(mcCode)) {
             throw new RuntimeException("Sensor does not belong to microcontroller: " + mcCode);
         }
 
-        if (status.getIsOccupied() != null && sensor.getSlot() != null) {
-            Slot slot = sensor.getSlot();
-            slot.setIsOccupied(status.getIsOccupied());
-            slotRepository.save(slot);
-
-            if (slot.getPs() != null) {
-                eventPublisher.publishSlotChanged(slot.getId(), slot.getIsOccupied(), slot.getPs().getId());
-            }
+        if (status.getIsOccupied() != null) {
+            // Only the slot row write is deferred to the write-behind flush; every reading is still broadcast
+            slotOccupancyWriteBehind.record(sensor.slotId(), status.getIsOccupied(), sensor.slotOccupied());
+            eventPublisher.publishSlotChanged(sensor.slotId(), status.getIsOccupied(), sensor.psId());
         }
 
-        Sensor saved = sensorRepository.save(sensor);
-        sensorRepository.flush();
-        slotRepository.flush();
-
-        SensorDto sensorDto = toDto(saved);
+        SensorDto sensorDto = toDto(sensor);
 
         messagingTemplate.convertAndSend("/topic/sensors", sensorDto);
 
         return sensorDto;
     }
 
-    private SensorDto toDto(Sensor sensor) {
+    private SensorDto toDto(SensorBinding sensor) {
         SensorDto dto = new SensorDto();
-        dto.setId(sensor.getId());
-        dto.setName(sensor.getName());
-        dto.setType(sensor.getType());
-        if (sensor.getSlot() != null) {
-            dto.setSlotId(sensor.getSlot().getId());
-            dto.setSlotName(sensor.getSlot().getName());
-            if (sensor.getSlot().getPs() != null) {
-                dto.setParkingSpaceId(sensor.getSlot().getPs().getId());
-            }
-        }
-        if (sensor.getMc() != null) {
-            dto.setMicrocontrollerId(sensor.getMc().getId());
-        }
+        dto.setId(sensor.sensorId());
+        dto.setName(sensor.name());
+        dto.setType(sensor.type());
+        dto.setSlotId(sensor.slotId());
+        dto.setSlotName(sensor.slotName());
+        dto.setParkingSpaceId(sensor.psId());
+        dto.setMicrocontrollerId(sensor.device().mcId());
         return dto;
     }
 }
@@ -12,6 +12,7 @@ import com.smart_parking_system.backend.repository.ParkingSpaceRepository;
 import com.smart_parking_system.backend.repository.UserParkingSpaceRepository;
 import com.smart_parking_system.backend.repository.UserRepository;
 import com.smart_parking_system.backend.service.IParkingSpaceService;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.BeanUtils;
 import org.springframework.security.core.Authentication;
@@ -29,6 +30,7 @@ public class ParkingSpaceServiceImpl implements IParkingSpaceService {
     private final ParkingSpaceRepository parkingSpaceRepository;
     private final UserParkingSpaceRepository userParkingSpaceRepository;
     private final UserRepository userRepository;
+    private final DeviceTopologyRegistry topologyRegistry;
 
     @Override
     @Transactional
@@ -116,6 +118,7 @@ public class ParkingSpaceServiceImpl implements IParkingSpaceService {
 
         // Delete the parking space itself
         parkingSpaceRepository.delete(parkingSpace);
+        topologyRegistry.invalidate();
     }
 
     @Override
@@ -10,6 +10,7 @@ import com.smart_parking_system.backend.repository.RfidRepository;
 import com.smart_parking_system.backend.repository.UserParkingSpaceRepository;
 import com.smart_parking_system.backend.repository.UserRepository;
 import com.smart_parking_system.backend.service.IRfidService;
+import com.smart_parking_system.backend.service.registry.RfidAdmissionIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -24,6 +25,7 @@ import java.util.stream.Collectors;
 public class RfidServiceImpl implements IRfidService {
 
     private final RfidRepository rfidRepository;
+    private final RfidAdmissionIndex admissionIndex;
     private final ParkingSpaceRepository parkingSpaceRepository;
     private final UserParkingSpaceRepository userParkingSpaceRepository;
     private final UserRepository userRepository;
@@ -49,6 +51,7 @@ public class RfidServiceImpl implements IRfidService {
 
         Rfid saved = rfidRepository.save(rfid);
         rfidRepository.flush();
+        admissionIndex.refreshAfterCommit(saved.getRfidCode());
 
         return toDto(saved);
     }
@@ -91,6 +94,7 @@ public class RfidServiceImpl implements IRfidService {
         requireMembership(currentUser.getId(), rfid.getPs().getId());
 
         rfidRepository.delete(rfid);
+        admissionIndex.refreshAfterCommit(rfid.getRfidCode());
     }
 
     private void requireMembership(Integer userId, Integer parkingSpaceId) {
@@ -1,14 +1,28 @@
 package com.smart_parking_system.backend.service.impl;
 
+import com.smart_parking_system.backend.dto.S3PresignedUrlDto;
 import com.smart_parking_system.backend.service.IS3Service;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 
+import java.net.URI;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 
 @Service
 public class S3ServiceImpl implements IS3Service {
@@ -22,34 +36,137 @@ public class S3ServiceImpl implements IS3Service {
     @Value("${app.s3.presignExpireSeconds:300}")
     private long presignExpireSeconds;
 
+    @Value("${app.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${app.s3.pathStyleAccess:false}")
+    private boolean pathStyleAccess;
+
+    @Value("${app.s3.presignCacheMarginSeconds:60}")
+    private long presignCacheMarginSeconds;
+
+    @Value("${app.s3.presignCacheMaxEntries:10000}")
+    private int presignCacheMaxEntries;
+
+    private record CachedUrl(String url, Instant expiresAt) {
+    }
+
+    // Built on first use, so the application still starts without S3 configured
+    private volatile S3Presigner presigner;
+
+    // Signed URLs are reused until shortly before they expire; least recently used keys are dropped first
+    private final Map<String, CachedUrl> urlCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedUrl> eldest) {
+            return size() > presignCacheMaxEntries;
+        }
+    };
+
+    private final Counter cacheHits;
+    private final Counter signed;
+
+    public S3ServiceImpl(MeterRegistry meterRegistry) {
+        this.cacheHits = presignCounter(meterRegistry, "cached");
+        this.signed = presignCounter(meterRegistry, "signed");
+    }
+
     @Override
     public String presignGetUrl(String key) {
         if (key == null || key.isBlank()) return null;
-        if (bucketName == null || bucketName.isBlank()) {
-            throw new IllegalStateException("app.s3.bucketName is not configured");
+        return presign(key).url();
+    }
+
+    @Override
+    public List<S3PresignedUrlDto> presignGetUrls(Collection<String> keys) {
+        List<S3PresignedUrlDto> urls = new ArrayList<>();
+        if (keys == null) return urls;
+
+        for (String key : new LinkedHashSet<>(keys)) {
+            if (key == null || key.isBlank()) continue;
+            CachedUrl url = presign(key);
+            urls.add(new S3PresignedUrlDto(key, url.url(), url.expiresAt()));
         }
-        if (region == null || region.isBlank()) {
-            throw new IllegalStateException("app.s3.region is not configured");
+        return urls;
+    }
+
+    private CachedUrl presign(String key) {
+        Instant now = Instant.now();
+        synchronized (urlCache) {
+            CachedUrl cached = urlCache.get(key);
+            if (cached != null && now.isBefore(cached.expiresAt().minusSeconds(reuseMarginSeconds()))) {
+                cacheHits.increment();
+                return cached;
+            }
         }
 
-        // Uses AWS default credential provider chain:
-        // env vars, system props, ~/.aws/credentials, EC2/ECS role, etc.
-        try (S3Presigner presigner = S3Presigner.builder()
-                .region(Region.of(region))
-                .build()) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
 
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(bucketName)
-                    .key(key)
-                    .build();
+        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(Duration.ofSeconds(presignExpireSeconds))
+                .getObjectRequest(getObjectRequest)
+                .build();
 
-            GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                    .signatureDuration(Duration.ofSeconds(presignExpireSeconds))
-                    .getObjectRequest(getObjectRequest)
-                    .build();
+        PresignedGetObjectRequest presigned = presigner().presignGetObject(presignRequest);
+        CachedUrl url = new CachedUrl(presigned.url().toString(), presigned.expiration());
+        signed.increment();
 
-            return presigner.presignGetObject(presignRequest).url().toString();
+        synchronized (urlCache) {
+            urlCache.put(key, url);
         }
+        return url;
     }
-}
 
+    private long reuseMarginSeconds() {
+        // A margin at least as long as the signature lifetime would disable the cache; cap it at half
+        return Math.min(presignCacheMarginSeconds, presignExpireSeconds / 2);
+    }
+
+    private S3Presigner presigner() {
+        S3Presigner current = presigner;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (presigner == null) {
+                if (bucketName == null || bucketName.isBlank()) {
+                    throw new IllegalStateException("app.s3.bucketName is not configured");
+                }
+                if (region == null || region.isBlank()) {
+                    throw new IllegalStateException("app.s3.region is not configured");
+                }
+
+                // Uses AWS default credential provider chain:
+                // env vars, system props, ~/.aws/credentials, EC2/ECS role, etc.
+                S3Presigner.Builder builder = S3Presigner.builder()
+                        .region(Region.of(region))
+                        .serviceConfiguration(S3Configuration.builder()
+                                .pathStyleAccessEnabled(pathStyleAccess)
+                                .build());
+                // Local S3-compatible stand-ins (e.g. MinIO) are reached through an endpoint override
+                if (endpoint != null && !endpoint.isBlank()) {
+                    builder.endpointOverride(URI.create(endpoint));
+                }
+                presigner = builder.build();
+            }
+            return presigner;
+        }
+    }
+
+    private static Counter presignCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("s3.presign")
+                .description("Presigned GET URLs, served from the cache or freshly signed")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        S3Presigner current = presigner;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
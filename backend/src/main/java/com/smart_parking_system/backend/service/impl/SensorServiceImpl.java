@@ -13,6 +13,7 @@ import com.smart_parking_system.backend.repository.SlotRepository;
 import com.smart_parking_system.backend.repository.UserParkingSpaceRepository;
 import com.smart_parking_system.backend.repository.UserRepository;
 import com.smart_parking_system.backend.service.ISensorService;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
 import lombok.RequiredArgsConstructor;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.Authentication;
@@ -32,6 +33,7 @@ public class SensorServiceImpl implements ISensorService {
     private final MicrocontrollerRepository microcontrollerRepository;
     private final UserParkingSpaceRepository userParkingSpaceRepository;
     private final UserRepository userRepository;
+    private final DeviceTopologyRegistry topologyRegistry;
 
     @Override
     @Transactional
@@ -71,6 +73,7 @@ public class SensorServiceImpl implements ISensorService {
 
         try {
             Sensor saved = sensorRepository.saveAndFlush(sensor);
+            topologyRegistry.invalidate();
             return toDto(saved);
         } catch (DataIntegrityViolationException e) {
             throw new RuntimeException("Sensor name already exists: " + normalizedName, e);
@@ -132,6 +135,7 @@ public class SensorServiceImpl implements ISensorService {
 
         try {
             Sensor saved = sensorRepository.saveAndFlush(sensor);
+            topologyRegistry.invalidate();
             return toDto(saved);
         } catch (DataIntegrityViolationException e) {
             throw new RuntimeException("Sensor name already exists: " + sensor.getName(), e);
@@ -150,6 +154,7 @@ public class SensorServiceImpl implements ISensorService {
         requireMembership(currentUser.getId(), psId);
 
         sensorRepository.delete(sensor);
+        topologyRegistry.invalidate();
     }
 
     private void requireMembership(Integer userId, Integer parkingSpaceId) {
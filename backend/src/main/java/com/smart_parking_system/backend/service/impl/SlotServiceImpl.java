@@ -17,6 +17,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.smart_parking_system.backend.service.realtime.RealtimeEventPublisher;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
+import com.smart_parking_system.backend.service.writebehind.SlotOccupancyWriteBehind;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -30,6 +32,8 @@ public class SlotServiceImpl implements ISlotService {
     private final UserParkingSpaceRepository userParkingSpaceRepository;
     private final UserRepository userRepository;
     private final RealtimeEventPublisher eventPublisher;
+    private final SlotOccupancyWriteBehind slotOccupancyWriteBehind;
+    private final DeviceTopologyRegistry topologyRegistry;
 
     @Override
     @Transactional
@@ -93,6 +97,9 @@ public class SlotServiceImpl implements ISlotService {
         requireMembership(currentUser.getId(), slot.getPs().getId());
 
         slotRepository.delete(slot);
+        slotOccupancyWriteBehind.forget(id);
+        // Sensors bound to the slot are removed by ON DELETE CASCADE
+        topologyRegistry.invalidate();
     }
 
     @Override
@@ -108,6 +115,7 @@ public class SlotServiceImpl implements ISlotService {
         slot.setIsOccupied(isOccupied);
         Slot saved = slotRepository.save(slot);
         slotRepository.flush();
+        slotOccupancyWriteBehind.markPersisted(saved.getId(), saved.getIsOccupied());
 
         // Push real-time update to all subscribed clients
         eventPublisher.publishSlotChanged(saved.getId(), saved.getIsOccupied(), saved.getPs().getId());
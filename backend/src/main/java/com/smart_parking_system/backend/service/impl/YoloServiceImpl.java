@@ -2,13 +2,19 @@ package com.smart_parking_system.backend.service.impl;
 
 import com.smart_parking_system.backend.dto.YoloResponseDto;
 import com.smart_parking_system.backend.service.IYoloService;
+import com.smart_parking_system.backend.service.lpr.LprBatchingClient;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,10 +24,17 @@ import java.util.Map;
 public class YoloServiceImpl implements IYoloService {
 
     private final RestTemplate restTemplate;
+    private final LprBatchingClient batchingClient;
 
     @Value("${yolo.server.url:http://100.93.49.32:8000/upload}")
     private String yoloServerUrl;
 
+    @Value("${yolo.server.binary-url:http://100.93.49.32:8000/upload-binary}")
+    private String yoloServerBinaryUrl;
+
+    @Value("${lpr.batch.enabled:true}")
+    private boolean batchingEnabled;
+
     public String detectLicensePlate(String imageBase64) {
         try {
             HttpHeaders headers = new HttpHeaders();
@@ -37,25 +50,60 @@ public class YoloServiceImpl implements IYoloService {
                     request,
                     YoloResponseDto.class);
 
-            if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                YoloResponseDto body = response.getBody();
-                String licensePlate = body.getPlate();
-
-                if (licensePlate != null && !licensePlate.trim().isEmpty()) {
-                    log.info("License plate detected: {}, status: {}", licensePlate, body.getStatus());
-                    return licensePlate;
-                } else {
-                    log.warn("YOLO server returned empty license plate, status: {}", body.getStatus());
-                    return null;
-                }
-            } else {
-                log.error("YOLO server returned non-OK status: {}", response.getStatusCode());
-                return null;
-            }
-
+            return extractPlate(response);
         } catch (Exception e) {
             log.error("Failed to detect license plate via YOLO server", e);
             return null;
         }
     }
+
+    @Override
+    public String recognizePlate(Path image, long timeoutMillis) {
+        if (batchingEnabled) {
+            return recognizeInBatch(image, timeoutMillis);
+        }
+
+        // The file part is streamed from disk in small chunks; the image is never held in memory
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.IMAGE_JPEG);
+
+        MultiValueMap<String, Object> requestBody = new LinkedMultiValueMap<>();
+        requestBody.add("image", new HttpEntity<>(new FileSystemResource(image), partHeaders));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ResponseEntity<YoloResponseDto> response = restTemplate.postForEntity(
+                yoloServerBinaryUrl,
+                new HttpEntity<>(requestBody, headers),
+                YoloResponseDto.class);
+
+        return extractPlate(response);
+    }
+
+    private String recognizeInBatch(Path image, long timeoutMillis) {
+        return plateOf(batchingClient.recognize(image, timeoutMillis));
+    }
+
+    private String extractPlate(ResponseEntity<YoloResponseDto> response) {
+        if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null) {
+            throw new RestClientException("YOLO server returned non-OK status: " + response.getStatusCode());
+        }
+        return plateOf(response.getBody());
+    }
+
+    private String plateOf(YoloResponseDto body) {
+        if (body == null) {
+            log.warn("YOLO server returned no result for image");
+            return null;
+        }
+        String licensePlate = body.getPlate();
+
+        if (licensePlate != null && !licensePlate.trim().isEmpty()) {
+            log.info("License plate detected: {}, status: {}", licensePlate, body.getStatus());
+            return licensePlate;
+        }
+        log.warn("YOLO server returned empty license plate, status: {}", body.getStatus());
+        return null;
+    }
 }
@@ -0,0 +1,238 @@
+package com.smart_parking_system.backend.service.lpr;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shrinks camera frames before they are sent to the LPR server: optional crop to a region of
+ * interest, downscale so the longest side is at most {@code max-dimension}, re-encode as JPEG at
+ * the configured quality.
+ * <p>
+ * Cropping and most of the downscaling happen while decoding (source region plus subsampling), so
+ * a full-resolution frame is never materialised. Work runs on its own small pool so decoding does
+ * not compete with request threads or the recognition workers. Anything that cannot be decoded is
+ * passed through unchanged.
+ */
+@Slf4j
+@Service
+public class ImagePreprocessor {
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final double[] regionOfInterest;
+    private final ThreadPoolExecutor pool;
+    private final Timer duration;
+    private final DistributionSummary sizeRatio;
+
+    public ImagePreprocessor(
+            @Value("${lpr.preprocess.enabled:true}") boolean enabled,
+            @Value("${lpr.preprocess.max-dimension:1280}") int maxDimension,
+            @Value("${lpr.preprocess.jpeg-quality:0.8}") float jpegQuality,
+            @Value("${lpr.preprocess.roi:}") String regionOfInterest,
+            @Value("${lpr.preprocess.threads:2}") int threads,
+            @Value("${lpr.preprocess.queue-capacity:50}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.regionOfInterest = parseRegionOfInterest(regionOfInterest);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "lpr-preprocess-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.duration = Timer.builder("lpr.preprocess.duration")
+                .description("Time to crop, downscale and re-encode one image")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.sizeRatio = DistributionSummary.builder("lpr.preprocess.size.ratio")
+                .description("Size of the pre-processed image relative to the upload")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Pre-processes {@code image} on the pre-processing pool. Ownership of the file passes to this
+     * method: the returned path is either a new file (and {@code image} is deleted) or
+     * {@code image} itself when nothing was gained.
+     *
+     * @throws RejectedExecutionException if the pool's queue is full
+     */
+    public CompletableFuture<Path> submit(Path image) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(image);
+        }
+        return CompletableFuture.supplyAsync(() -> process(image), pool);
+    }
+
+    private Path process(Path image) {
+        long start = System.nanoTime();
+        try {
+            Path processed = shrink(image);
+            if (processed == null) {
+                return image;
+            }
+            long before = Files.size(image);
+            long after = Files.size(processed);
+            if (after >= before) {
+                Files.deleteIfExists(processed);
+                return image;
+            }
+            Files.deleteIfExists(image);
+            sizeRatio.record((double) after / before);
+            return processed;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not pre-process image {}, sending it unchanged: {}", image, e.getMessage());
+            return image;
+        } finally {
+            duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Path shrink(Path image) throws IOException {
+        BufferedImage decoded;
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                Rectangle region = region(width, height);
+                int subsampling = Math.max(1, Math.max(region.width, region.height) / maxDimension);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        BufferedImage scaled = scaleToFit(decoded);
+        Path output = Files.createTempFile("lpr-", ".jpg");
+        try {
+            writeJpeg(scaled, output);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+        return output;
+    }
+
+    private Rectangle region(int width, int height) {
+        if (regionOfInterest == null) {
+            return new Rectangle(0, 0, width, height);
+        }
+        int x = (int) Math.round(regionOfInterest[0] * width);
+        int y = (int) Math.round(regionOfInterest[1] * height);
+        int w = (int) Math.round(regionOfInterest[2] * width);
+        int h = (int) Math.round(regionOfInterest[3] * height);
+        return new Rectangle(x, y, Math.max(1, Math.min(w, width - x)), Math.max(1, Math.min(h, height - y)));
+    }
+
+    private BufferedImage scaleToFit(BufferedImage image) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        boolean needsRgb = image.getType() != BufferedImage.TYPE_INT_RGB
+                && image.getType() != BufferedImage.TYPE_3BYTE_BGR;
+        if (longest <= maxDimension && !needsRgb) {
+            return image;
+        }
+        double scale = Math.min(1.0, (double) maxDimension / longest);
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        // JPEG has no alpha; drawing onto an RGB canvas also drops it
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private void writeJpeg(BufferedImage image, Path output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Parses "x,y,width,height" given as fractions of the frame (e.g. "0,0.4,1,0.6" keeps the
+     * lower 60%). Empty means the whole frame.
+     */
+    private static double[] parseRegionOfInterest(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String[] parts = value.split(",");
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("lpr.preprocess.roi must be x,y,width,height: " + value);
+        }
+        double[] roi = new double[4];
+        for (int i = 0; i < 4; i++) {
+            roi[i] = Double.parseDouble(parts[i].trim());
+            if (roi[i] < 0 || roi[i] > 1) {
+                throw new IllegalArgumentException("lpr.preprocess.roi values must be between 0 and 1: " + value);
+            }
+        }
+        if (roi[2] == 0 || roi[3] == 0 || roi[0] + roi[2] > 1 || roi[1] + roi[3] > 1) {
+            throw new IllegalArgumentException("lpr.preprocess.roi must lie inside the frame: " + value);
+        }
+        return roi;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
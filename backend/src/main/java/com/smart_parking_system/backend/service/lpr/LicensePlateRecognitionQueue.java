@@ -0,0 +1,240 @@
+package com.smart_parking_system.backend.service.lpr;
+
+import com.smart_parking_system.backend.service.IYoloService;
+import com.smart_parking_system.backend.util.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs license-plate recognition on a small bounded worker pool, away from request threads and
+ * database transactions. Images are first shrunk by the {@link ImagePreprocessor}. Concurrent jobs
+ * share server calls through the {@link LprBatchingClient}, so there should be at least as many
+ * workers as the batch size. Frames that match a recent snapshot of the same card in the
+ * {@link PlateDedupeCache} are answered from it without calling the server.
+ * <p>
+ * Each job has a deadline, which also bounds the wait for a batched call. Transport failures, 5xx
+ * answers and timeouts are retried with exponential backoff while the deadline allows, and they
+ * feed a {@link CircuitBreaker}: once the LPR server keeps failing, jobs are answered immediately
+ * without calling it. Every call let through by the breaker reports its outcome, whatever it
+ * throws. A job that cannot produce a plate completes with null, which callers record as an
+ * unknown plate.
+ */
+@Slf4j
+@Service
+public class LicensePlateRecognitionQueue {
+
+    private final IYoloService yoloService;
+    private final ImagePreprocessor preprocessor;
+    private final PlateDedupeCache dedupeCache;
+    private final ThreadPoolExecutor workers;
+    private final CircuitBreaker breaker;
+    private final long deadlineMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    private final Counter recognized;
+    private final Counter noPlate;
+    private final Counter failed;
+    private final Counter expired;
+    private final Counter shortCircuited;
+    private final Counter rejected;
+    private final Counter deduplicated;
+    private final Timer latency;
+
+    public LicensePlateRecognitionQueue(IYoloService yoloService, ImagePreprocessor preprocessor,
+            PlateDedupeCache dedupeCache,
+            @Value("${lpr.workers:8}") int workerCount,
+            @Value("${lpr.queue-capacity:50}") int queueCapacity,
+            @Value("${lpr.deadline-ms:30000}") long deadlineMillis,
+            @Value("${lpr.max-attempts:3}") int maxAttempts,
+            @Value("${lpr.backoff-ms:500}") long backoffMillis,
+            @Value("${lpr.breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${lpr.breaker.open-ms:30000}") long openMillis,
+            MeterRegistry meterRegistry) {
+        this.yoloService = yoloService;
+        this.preprocessor = preprocessor;
+        this.dedupeCache = dedupeCache;
+        this.deadlineMillis = deadlineMillis;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoffMillis;
+        this.breaker = new CircuitBreaker(failureThreshold, openMillis);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "lpr-worker-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.recognized = outcomeCounter(meterRegistry, "recognized");
+        this.noPlate = outcomeCounter(meterRegistry, "no_plate");
+        this.failed = outcomeCounter(meterRegistry, "failed");
+        this.expired = outcomeCounter(meterRegistry, "expired");
+        this.shortCircuited = outcomeCounter(meterRegistry, "short_circuited");
+        this.rejected = outcomeCounter(meterRegistry, "rejected");
+        this.deduplicated = outcomeCounter(meterRegistry, "deduplicated");
+        this.latency = Timer.builder("lpr.latency")
+                .description("Duration of successful calls to the LPR server")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("lpr.queue.depth", workers, executor -> executor.getQueue().size())
+                .description("Recognition jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("lpr.breaker.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the LPR circuit breaker is open or half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues an image file taken for {@code rfidCode} for pre-processing and recognition. The
+     * queue takes ownership of the file and deletes it once the job is finished or rejected.
+     *
+     * @return completes with the plate, or null if none could be read in time
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public CompletableFuture<String> submit(String rfidCode, Path image) {
+        long deadline = System.currentTimeMillis() + deadlineMillis;
+        CompletableFuture<Path> prepared;
+        try {
+            prepared = preprocessor.submit(image);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            deleteQuietly(image);
+            throw new RejectedExecutionException("License plate recognition queue is full", e);
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        prepared.whenComplete((processed, error) -> {
+            Path file = processed != null ? processed : image;
+            try {
+                workers.execute(() -> {
+                    try {
+                        result.complete(recognizeOnce(rfidCode, file, deadline));
+                    } catch (RuntimeException e) {
+                        failed.increment();
+                        log.error("License plate recognition failed", e);
+                        result.complete(null);
+                    } finally {
+                        deleteQuietly(file);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rejected.increment();
+                log.warn("License plate recognition queue is full, dropping pre-processed image");
+                deleteQuietly(file);
+                result.complete(null);
+            }
+        });
+        return result;
+    }
+
+    private String recognizeOnce(String rfidCode, Path image, long deadline) {
+        Long hash = dedupeCache.hashFile(image);
+        String cached = dedupeCache.lookup(rfidCode, hash);
+        if (cached != null) {
+            deduplicated.increment();
+            return cached;
+        }
+        String plate = recognize(image, deadline);
+        dedupeCache.record(rfidCode, hash, plate);
+        return plate;
+    }
+
+    private String recognize(Path image, long deadline) {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (System.currentTimeMillis() >= deadline) {
+                expired.increment();
+                log.warn("License plate recognition deadline passed before attempt {}", attempt);
+                return null;
+            }
+            if (!breaker.tryAcquire()) {
+                shortCircuited.increment();
+                log.warn("LPR circuit breaker is open, skipping recognition");
+                return null;
+            }
+
+            long start = System.nanoTime();
+            try {
+                String plate = yoloService.recognizePlate(image, deadline - System.currentTimeMillis());
+                breaker.recordSuccess();
+                latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                (plate != null ? recognized : noPlate).increment();
+                return plate;
+            } catch (HttpClientErrorException e) {
+                // The server is up but refused this image; retrying will not help
+                breaker.recordSuccess();
+                failed.increment();
+                log.warn("LPR server rejected image: {}", e.getStatusCode());
+                return null;
+            } catch (RestClientException e) {
+                // Requests that shared a failed batch call count it once
+                if (!(e instanceof LprCallException call) || call.countOnce()) {
+                    breaker.recordFailure();
+                } else {
+                    breaker.release();
+                }
+                log.warn("LPR attempt {}/{} failed: {}", attempt, maxAttempts, e.getMessage());
+            } catch (RuntimeException e) {
+                // Unexpected, so not retried; still ends the breaker's permit (in HALF_OPEN the only trial call)
+                breaker.recordFailure();
+                failed.increment();
+                log.error("LPR attempt {}/{} failed", attempt, maxAttempts, e);
+                return null;
+            }
+
+            long backoff = backoffMillis << (attempt - 1);
+            if (attempt == maxAttempts || System.currentTimeMillis() + backoff >= deadline) {
+                break;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failed.increment();
+        return null;
+    }
+
+    private static void deleteQuietly(Path image) {
+        try {
+            Files.deleteIfExists(image);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled image {}: {}", image, e.getMessage());
+        }
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("lpr.requests")
+                .description("License plate recognition jobs by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
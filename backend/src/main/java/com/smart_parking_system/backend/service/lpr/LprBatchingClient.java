@@ -0,0 +1,322 @@
+package com.smart_parking_system.backend.service.lpr;
+
+import com.smart_parking_system.backend.dto.YoloBatchResponseDto;
+import com.smart_parking_system.backend.dto.YoloResponseDto;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects concurrent recognition requests into micro-batches and sends each batch to the LPR
+ * server's batch endpoint as one multipart call, so the server runs the model once per batch
+ * instead of once per image.
+ * <p>
+ * A batch is closed when it reaches {@code max-size} or when {@code linger-ms} have passed since
+ * its first image, whichever comes first. A single dispatcher thread sends batches one at a time;
+ * requests arriving while a call is in flight make up the next batch, so batches grow with load
+ * and a lone request only waits for the linger time. Results are matched to requests by position.
+ * A failed call fails every request in the batch with the same {@link LprCallException}, which
+ * counts as one failure. Requests cancelled by their caller before the batch is sent are left out of it.
+ */
+@Slf4j
+@Service
+public class LprBatchingClient {
+
+    private static final class Pending {
+
+        private final Path image;
+        private final CompletableFuture<YoloResponseDto> result = new CompletableFuture<>();
+        // Set once the request is sent; shared by every request of that call
+        private volatile AtomicBoolean failureCounted;
+
+        private Pending(Path image) {
+            this.image = image;
+        }
+
+        private Path image() {
+            return image;
+        }
+
+        private CompletableFuture<YoloResponseDto> result() {
+            return result;
+        }
+    }
+
+    private final RestTemplate restTemplate;
+    private final String batchUrl;
+    private final int maxBatchSize;
+    private final long lingerNanos;
+    private final LinkedBlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private final DistributionSummary batchSize;
+    private final Timer batchDuration;
+
+    private volatile boolean running = true;
+
+    public LprBatchingClient(RestTemplate restTemplate,
+            @Value("${yolo.server.batch-url:http://100.93.49.32:8000/upload-batch}") String batchUrl,
+            @Value("${lpr.batch.max-size:8}") int maxBatchSize,
+            @Value("${lpr.batch.linger-ms:20}") long lingerMillis,
+            MeterRegistry meterRegistry) {
+        this.restTemplate = restTemplate;
+        this.batchUrl = batchUrl;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, lingerMillis));
+
+        this.batchSize = DistributionSummary.builder("lpr.batch.size")
+                .description("Images sent per call to the LPR batch endpoint")
+                .register(meterRegistry);
+        this.batchDuration = Timer.builder("lpr.batch.duration")
+                .description("Duration of calls to the LPR batch endpoint")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        this.dispatcher = new Thread(this::dispatch, "lpr-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Adds {@code image} to the next batch. The file is only read while the batch is sent; the
+     * caller keeps ownership and may delete it once the returned future has completed or been cancelled.
+     *
+     * @return completes with this image's entry of the batch response, or exceptionally with the
+     * {@link RestClientException} that failed the batch
+     */
+    public CompletableFuture<YoloResponseDto> submit(Path image) {
+        return enqueue(image).result();
+    }
+
+    /**
+     * Recognizes {@code image} as part of the next batch, waiting at most {@code timeoutMillis}.
+     * A timeout is reported like a failure of the call the image was sent with; an image that was
+     * not sent yet is taken out of its batch and does not count against the server.
+     *
+     * @throws RestClientException if the call failed or did not answer in time
+     */
+    public YoloResponseDto recognize(Path image, long timeoutMillis) {
+        Pending request = enqueue(image);
+        try {
+            return request.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RestClientException("LPR batch failed", e.getCause());
+        } catch (TimeoutException e) {
+            request.result().cancel(false);
+            throw new LprCallException("LPR batch did not answer within " + timeoutMillis + " ms", e,
+                    sharedFailure(request));
+        } catch (InterruptedException e) {
+            request.result().cancel(false);
+            Thread.currentThread().interrupt();
+            throw new LprCallException("Interrupted while waiting for the LPR batch", e, new AtomicBoolean(true));
+        }
+    }
+
+    private Pending enqueue(Path image) {
+        Pending request = new Pending(image);
+        if (!running) {
+            request.result().completeExceptionally(new RestClientException("LPR batching client is shut down"));
+            return request;
+        }
+        pending.add(request);
+        return request;
+    }
+
+    private static AtomicBoolean sharedFailure(Pending request) {
+        AtomicBoolean counted = request.failureCounted;
+        return counted != null ? counted : new AtomicBoolean(true);
+    }
+
+    private void dispatch() {
+        while (running) {
+            List<Pending> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                break;
+            }
+            send(batch);
+        }
+
+        List<Pending> abandoned = new ArrayList<>();
+        pending.drainTo(abandoned);
+        RestClientException shutdown = new RestClientException("LPR batching client is shut down");
+        abandoned.forEach(p -> p.result().completeExceptionally(shutdown));
+    }
+
+    private List<Pending> nextBatch() throws InterruptedException {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        batch.add(pending.take());
+
+        long lingerUntil = System.nanoTime() + lingerNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = lingerUntil - System.nanoTime();
+            if (remaining <= 0) {
+                pending.drainTo(batch, maxBatchSize - batch.size());
+                break;
+            }
+            Pending next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void send(List<Pending> requested) {
+        // Files are opened up front: a caller that gave up on its deadline deletes its file, which
+        // must not fail the rest of a batch that is already being sent
+        List<Pending> batch = new ArrayList<>(requested.size());
+        List<OpenedImage> images = new ArrayList<>(requested.size());
+        for (Pending p : requested) {
+            if (p.result().isDone()) {
+                continue;
+            }
+            try {
+                images.add(OpenedImage.open(p.image()));
+                batch.add(p);
+            } catch (IOException e) {
+                p.result().completeExceptionally(new UncheckedIOException(e));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        AtomicBoolean failureCounted = new AtomicBoolean();
+        batch.forEach(p -> p.failureCounted = failureCounted);
+
+        long start = System.nanoTime();
+        try {
+            List<YoloResponseDto> results = post(images);
+            batchSize.record(batch.size());
+            batchDuration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            log.warn("LPR batch of {} failed: {}", batch.size(), e.getMessage());
+            // A 4xx is the server refusing the images, not failing; it is passed on as is
+            RestClientException failure = e instanceof HttpClientErrorException rejected
+                    ? rejected
+                    : new LprCallException("LPR batch failed: " + e.getMessage(), e, failureCounted);
+            batch.forEach(p -> p.result().completeExceptionally(failure));
+        } finally {
+            images.forEach(OpenedImage::closeQuietly);
+        }
+    }
+
+    private List<YoloResponseDto> post(List<OpenedImage> batch) {
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.IMAGE_JPEG);
+
+        // One "images" part per request, streamed from disk in order
+        MultiValueMap<String, Object> requestBody = new LinkedMultiValueMap<>();
+        for (OpenedImage image : batch) {
+            requestBody.add("images", new HttpEntity<>(image, partHeaders));
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+
+        ResponseEntity<YoloBatchResponseDto> response = restTemplate.postForEntity(
+                batchUrl,
+                new HttpEntity<>(requestBody, headers),
+                YoloBatchResponseDto.class);
+
+        if (response.getStatusCode() != HttpStatus.OK || response.getBody() == null
+                || response.getBody().getResults() == null) {
+            throw new RestClientException("YOLO server returned no batch results, status: " + response.getStatusCode());
+        }
+        List<YoloResponseDto> results = response.getBody().getResults();
+        if (results.size() != batch.size()) {
+            throw new RestClientException("YOLO server returned " + results.size() + " results for "
+                    + batch.size() + " images");
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    /**
+     * File part backed by a stream opened before the call; reported with its name and size like a
+     * file resource, so it is sent as a file upload with a known length.
+     */
+    private static final class OpenedImage extends InputStreamResource {
+
+        private final InputStream stream;
+        private final String filename;
+        private final long length;
+
+        private OpenedImage(InputStream stream, String filename, long length) {
+            super(stream);
+            this.stream = stream;
+            this.filename = filename;
+            this.length = length;
+        }
+
+        private static OpenedImage open(Path image) throws IOException {
+            InputStream stream = Files.newInputStream(image);
+            try {
+                return new OpenedImage(stream, image.getFileName().toString(), Files.size(image));
+            } catch (IOException e) {
+                stream.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        private void closeQuietly() {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                log.debug("Could not close image stream {}: {}", filename, e.getMessage());
+            }
+        }
+    }
+}
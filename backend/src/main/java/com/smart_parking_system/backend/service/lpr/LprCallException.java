@@ -0,0 +1,28 @@
+package com.smart_parking_system.backend.service.lpr;
+
+import org.springframework.web.client.RestClientException;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Failure of one call to the LPR server. A batched call fails every request in it with the same
+ * exception; {@link #countOnce()} is true for the first of them only, so the call feeds the
+ * circuit breaker as a single failure however many requests it carried.
+ */
+public class LprCallException extends RestClientException {
+
+    private final AtomicBoolean counted;
+
+    LprCallException(String message, Throwable cause, AtomicBoolean counted) {
+        super(message, cause);
+        this.counted = counted;
+    }
+
+    /**
+     * Returns true the first time it is called for a given call, false afterwards and for requests
+     * that gave up before their call was sent.
+     */
+    public boolean countOnce() {
+        return counted.compareAndSet(false, true);
+    }
+}
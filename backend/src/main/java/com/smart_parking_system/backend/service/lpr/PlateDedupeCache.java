@@ -0,0 +1,154 @@
+package com.smart_parking_system.backend.service.lpr;
+
+import com.smart_parking_system.backend.util.PerceptualHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the plates recognized for recent gate snapshots so that near-identical frames for the
+ * same card (camera retries, double triggers) are answered without another inference.
+ * <p>
+ * Entries are keyed by RFID code and a {@link PerceptualHash perceptual hash} of the image; a
+ * lookup hits when a snapshot of the same card from within {@code window-ms} is at most
+ * {@code max-distance} bits away. The cache keeps a few snapshots for each of the
+ * {@code max-cards} most recently used cards. Failed recognitions are not cached.
+ */
+@Slf4j
+@Service
+public class PlateDedupeCache {
+
+    private static final int SNAPSHOTS_PER_CARD = 4;
+
+    // Hashing only needs a coarse image; decode at most about this many pixels per side
+    private static final int HASH_DECODE_SIZE = 128;
+
+    private record Snapshot(long hash, String plate, long recordedAt) {
+    }
+
+    private final boolean enabled;
+    private final int maxDistance;
+    private final long windowMillis;
+    private final Map<String, ArrayDeque<Snapshot>> snapshotsByRfid;
+    private final Counter hits;
+    private final Counter misses;
+
+    public PlateDedupeCache(
+            @Value("${lpr.dedupe.enabled:true}") boolean enabled,
+            @Value("${lpr.dedupe.max-distance:6}") int maxDistance,
+            @Value("${lpr.dedupe.window-ms:120000}") long windowMillis,
+            @Value("${lpr.dedupe.max-cards:1000}") int maxCards,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxDistance = maxDistance;
+        this.windowMillis = windowMillis;
+        this.snapshotsByRfid = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ArrayDeque<Snapshot>> eldest) {
+                return size() > maxCards;
+            }
+        };
+
+        this.hits = lookupCounter(meterRegistry, "hit");
+        this.misses = lookupCounter(meterRegistry, "miss");
+        Gauge.builder("lpr.dedupe.cards", this, PlateDedupeCache::size)
+                .description("Cards with cached plate snapshots")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return the perceptual hash of the image file, or null if deduplication is disabled or the
+     * file cannot be decoded
+     */
+    public Long hashFile(Path image) {
+        if (!enabled) {
+            return null;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(image.toFile())) {
+            return hash(input);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not hash image {}: {}", image, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return the plate recognized for a near-identical recent snapshot of this card, or null
+     */
+    public synchronized String lookup(String rfidCode, Long hash) {
+        if (hash == null || rfidCode == null) {
+            return null;
+        }
+        ArrayDeque<Snapshot> snapshots = snapshotsByRfid.get(rfidCode);
+        if (snapshots != null) {
+            long oldest = System.currentTimeMillis() - windowMillis;
+            snapshots.removeIf(snapshot -> snapshot.recordedAt() < oldest);
+            for (Snapshot snapshot : snapshots) {
+                if (PerceptualHash.distance(snapshot.hash(), hash) <= maxDistance) {
+                    hits.increment();
+                    return snapshot.plate();
+                }
+            }
+            if (snapshots.isEmpty()) {
+                snapshotsByRfid.remove(rfidCode);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public synchronized void record(String rfidCode, Long hash, String plate) {
+        if (hash == null || rfidCode == null || plate == null || plate.trim().isEmpty()) {
+            return;
+        }
+        ArrayDeque<Snapshot> snapshots = snapshotsByRfid.computeIfAbsent(rfidCode, key -> new ArrayDeque<>());
+        if (snapshots.size() == SNAPSHOTS_PER_CARD) {
+            snapshots.removeFirst();
+        }
+        snapshots.addLast(new Snapshot(hash, plate, System.currentTimeMillis()));
+    }
+
+    private synchronized int size() {
+        return snapshotsByRfid.size();
+    }
+
+    private static Long hash(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+        if (readers == null || !readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / HASH_DECODE_SIZE);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            BufferedImage image = reader.read(0, param);
+            return PerceptualHash.differenceHash(image);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("lpr.dedupe.lookups")
+                .description("Plate cache lookups for gate snapshots; hit rate is hit / (hit + miss)")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,255 @@
+package com.smart_parking_system.backend.service.partition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps entry_log partitioned by month of in_time.
+ * <p>
+ * Every run creates the partitions for the current month and {@code months-ahead} more, each with
+ * the unique index that allows one open session per card (a unique index on the partitioned table
+ * would have to include in_time). The current month is taken from the database clock, the same
+ * local time in_time is bounded by, not from the JVM's time zone. Partitions older than
+ * {@code retention-months} are detached concurrently, copied to {@code <archive-dir>/entry_log_pYYYY_MM.csv.gz} and dropped. A partition
+ * that still holds an open session is kept. If a run stops between the detach and the drop, the next
+ * run archives the left-over table. Retention is off by default ({@code retention-months} 0), so
+ * nothing is deleted unless it is configured.
+ * <p>
+ * DDL runs with a short lock timeout and a run that cannot get its locks is simply retried the
+ * next time, so a long export never queues the gate traffic behind a partition change. Replicas
+ * take a PostgreSQL advisory lock so only one of them runs at a time.
+ */
+@Slf4j
+@Service
+public class EntryLogPartitionManager {
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("entry_log_p(\\d{4})_(\\d{2})");
+    // Any constant shared by all replicas; spells "entrylog"
+    private static final long ADVISORY_LOCK_KEY = 0x656e7472796c6f67L;
+
+    private static final String SELECT_PARTITIONS = """
+            SELECT c.relname, i.inhdetachpending
+            FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'entry_log'::regclass""";
+
+    private static final String SELECT_DETACHED = """
+            SELECT c.relname FROM pg_class c
+            WHERE c.relkind = 'r' AND NOT c.relispartition
+              AND c.relnamespace = (SELECT relnamespace FROM pg_class WHERE oid = 'entry_log'::regclass)
+              AND c.relname ~ '^entry_log_p[0-9]{4}_[0-9]{2}$'""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Path archiveDir;
+    private final long lockTimeoutMillis;
+
+    public EntryLogPartitionManager(JdbcTemplate jdbcTemplate,
+                                    @Value("${entry-log.partition.months-ahead:3}") int monthsAhead,
+                                    @Value("${entry-log.partition.retention-months:0}") int retentionMonths,
+                                    @Value("${entry-log.partition.archive-dir:archive/entry-log}") String archiveDir,
+                                    @Value("${entry-log.partition.lock-timeout-ms:5000}") long lockTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = retentionMonths;
+        this.archiveDir = Path.of(archiveDir);
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
+
+    /**
+     * Creates upcoming partitions and applies the retention policy.
+     */
+    public void maintain() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!connection.getAutoCommit()) {
+                // DETACH ... CONCURRENTLY cannot run inside a transaction block
+                throw new IllegalStateException("Partition maintenance must not run inside a transaction");
+            }
+            if (!tryAdvisoryLock(connection)) {
+                log.info("Entry log partition maintenance is running elsewhere, skipping");
+                return null;
+            }
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET lock_timeout = " + lockTimeoutMillis);
+                }
+                YearMonth current = currentMonth(connection);
+                createPartitions(connection, current);
+                if (retentionMonths > 0) {
+                    detachExpired(connection, current.minusMonths(retentionMonths));
+                }
+                archiveDetached(connection);
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("RESET lock_timeout");
+                    statement.execute("SELECT pg_advisory_unlock(" + ADVISORY_LOCK_KEY + ")");
+                }
+            }
+            return null;
+        });
+    }
+
+    private void createPartitions(Connection connection, YearMonth current) throws SQLException {
+        List<String> existing = new ArrayList<>();
+        for (Partition partition : partitions(connection)) {
+            existing.add(partition.name());
+        }
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            String name = partitionName(month);
+            if (existing.contains(name)) {
+                continue;
+            }
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE " + name + " PARTITION OF entry_log FOR VALUES FROM ('"
+                        + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+                statement.execute("CREATE UNIQUE INDEX " + name + "_active_rfid ON " + name
+                        + " (rfid_id) WHERE out_time IS NULL");
+                connection.commit();
+                log.info("Created entry log partition {}", name);
+            } catch (SQLException e) {
+                connection.rollback();
+                log.warn("Could not create entry log partition {}, will retry: {}", name, e.getMessage());
+                return;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void detachExpired(Connection connection, YearMonth oldestKept) throws SQLException {
+        for (Partition partition : partitions(connection)) {
+            Matcher matcher = PARTITION_NAME.matcher(partition.name());
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            try (Statement statement = connection.createStatement()) {
+                if (partition.detachPending()) {
+                    // A previous concurrent detach was interrupted
+                    statement.execute("ALTER TABLE entry_log DETACH PARTITION " + partition.name() + " FINALIZE");
+                } else {
+                    if (hasOpenSession(connection, partition.name())) {
+                        log.warn("Entry log partition {} is past retention but still has open sessions, keeping it",
+                                partition.name());
+                        continue;
+                    }
+                    statement.execute("ALTER TABLE entry_log DETACH PARTITION " + partition.name() + " CONCURRENTLY");
+                }
+                log.info("Detached entry log partition {}", partition.name());
+            } catch (SQLException e) {
+                log.warn("Could not detach entry log partition {}, will retry: {}", partition.name(), e.getMessage());
+            }
+        }
+    }
+
+    private void archiveDetached(Connection connection) throws SQLException {
+        List<String> detached = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SELECT_DETACHED)) {
+            while (rs.next()) {
+                detached.add(rs.getString(1));
+            }
+        }
+        for (String name : detached) {
+            try {
+                Path archive = archive(connection, name);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP TABLE " + name);
+                }
+                log.info("Archived entry log partition {} to {}", name, archive);
+            } catch (IOException | SQLException e) {
+                log.error("Could not archive entry log partition {}, keeping the table", name, e);
+            }
+        }
+    }
+
+    private Path archive(Connection connection, String name) throws IOException, SQLException {
+        Files.createDirectories(archiveDir);
+        Path target = archiveDir.resolve(name + ".csv.gz");
+        Path temp = Files.createTempFile(archiveDir, name, ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp), 64 * 1024)) {
+                connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyOut("COPY " + name + " TO STDOUT WITH (FORMAT csv, HEADER)", out);
+            }
+            // The table is dropped next; the archive must be on disk first
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static YearMonth currentMonth(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT CAST(localtimestamp AS date)")) {
+            rs.next();
+            return YearMonth.from(rs.getObject(1, LocalDate.class));
+        }
+    }
+
+    private static boolean tryAdvisoryLock(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_try_advisory_lock(" + ADVISORY_LOCK_KEY + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static boolean hasOpenSession(Connection connection, String partition) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE out_time IS NULL)");
+             ResultSet rs = statement.executeQuery()) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private static List<Partition> partitions(Connection connection) throws SQLException {
+        List<Partition> partitions = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SELECT_PARTITIONS)) {
+            while (rs.next()) {
+                partitions.add(new Partition(rs.getString(1), rs.getBoolean(2)));
+            }
+        }
+        return partitions;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("entry_log_p%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+
+    private record Partition(String name, boolean detachPending) {
+    }
+}
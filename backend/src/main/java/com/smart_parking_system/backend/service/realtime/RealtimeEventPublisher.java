@@ -3,6 +3,7 @@ package com.smart_parking_system.backend.service.realtime;
 import com.smart_parking_system.backend.dto.realtime.DoorChangedEvent;
 import com.smart_parking_system.backend.dto.realtime.EntryLogEvent;
 import com.smart_parking_system.backend.dto.realtime.LcdChangedEvent;
+import com.smart_parking_system.backend.dto.realtime.MicrocontrollerStatusEvent;
 import com.smart_parking_system.backend.dto.realtime.RfidChangedEvent;
 import com.smart_parking_system.backend.dto.realtime.SlotChangedEvent;
 import lombok.RequiredArgsConstructor;
@@ -45,6 +46,14 @@ public class RealtimeEventPublisher {
         messagingTemplate.convertAndSend("/topic/entrylog_new_events", event);
     }
 
+    public void publishLicensePlateRecognized(Integer entryLogId, String licensePlate, String rfidCode,
+            Integer parkingSpaceId) {
+        long eventId = nextEventId();
+        EntryLogEvent event = EntryLogEvent.plateRecognized(eventId, Instant.now(), entryLogId, licensePlate, rfidCode,
+                parkingSpaceId);
+        messagingTemplate.convertAndSend("/topic/entrylog_new_events", event);
+    }
+
     public void publishDoorChanged(Integer doorId, String doorName, Boolean isOpened, Integer microcontrollerId,
             Integer parkingSpaceId) {
         long eventId = nextEventId();
@@ -67,4 +76,12 @@ public class RealtimeEventPublisher {
                 parkingSpaceId);
         messagingTemplate.convertAndSend("/topic/rfid_updates", event);
     }
+
+    public void publishMicrocontrollerStatusChanged(Integer microcontrollerId, String mcCode, Boolean online,
+            Instant lastSeen, Integer parkingSpaceId) {
+        long eventId = nextEventId();
+        MicrocontrollerStatusEvent event = MicrocontrollerStatusEvent.of(eventId, Instant.now(), microcontrollerId,
+                mcCode, online, lastSeen, parkingSpaceId);
+        messagingTemplate.convertAndSend("/topic/microcontroller_updates", event);
+    }
 }
@@ -0,0 +1,296 @@
+package com.smart_parking_system.backend.service.registry;
+
+import com.smart_parking_system.backend.util.IntObjectMap;
+import com.smart_parking_system.backend.util.MqttTopicUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory copy of the device topology the MQTT ingestion path needs: which parking space a
+ * microcontroller belongs to, its MQTT username and outbound topics, and which slot and
+ * microcontroller every sensor is bound to.
+ * <p>
+ * The whole topology is loaded with two queries into an immutable {@link Topology} snapshot that
+ * readers use without locking. Services that change microcontrollers, sensors or slots call
+ * {@link #invalidate()}, which rebuilds the snapshot once their transaction has committed;
+ * invalidations that commit while a rebuild is waiting share the next one. Provisioning only
+ * binds sensors, so it patches those into the snapshot ({@link #putSensorsAfterCommit}) instead.
+ * <p>
+ * Rows changed by another instance or by hand are picked up two ways: a lookup that misses
+ * reloads the snapshot (at most once per miss-reload-interval-ms) before reporting the device
+ * or sensor as unknown, and the snapshot is reloaded every refresh-interval-ms. A reload that
+ * finds nothing changed keeps the current snapshot and its generation.
+ */
+@Slf4j
+@Service
+public class DeviceTopologyRegistry {
+
+    private static final String SELECT_DEVICES =
+            "SELECT mc_id, mc_code, ps_id, mqtt_username FROM microcontroller";
+
+    private static final String SELECT_SENSORS =
+            "SELECT s.sensor_id, s.name, s.type, s.mc_id, sl.slot_id, sl.name AS slot_name, sl.ps_id, sl.is_occupied "
+                    + "FROM sensor s JOIN slot sl ON sl.slot_id = s.slot_id";
+
+    private static final Object RELOAD_AFTER_COMMIT = new Object();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String baseTopic;
+    private final long missReloadIntervalNanos;
+
+    private volatile Topology topology;
+    private volatile long lastReloadNanos;
+    private long lastReloadStartedNanos;
+    private long generation;
+
+    public DeviceTopologyRegistry(
+            JdbcTemplate jdbcTemplate,
+            @Value("${mqtt.base-topic}") String baseTopic,
+            @Value("${device-topology.miss-reload-interval-ms:1000}") long missReloadIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.baseTopic = baseTopic;
+        this.missReloadIntervalNanos = TimeUnit.MILLISECONDS.toNanos(missReloadIntervalMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Could not preload device topology, it will be loaded on first use: {}", e.getMessage());
+        }
+    }
+
+    public Device device(String mcCode) {
+        if (mcCode == null) {
+            return null;
+        }
+        Device device = topology().devices().get(mcCode);
+        if (device == null) {
+            Topology reloaded = reloadOnMiss();
+            device = reloaded != null ? reloaded.devices().get(mcCode) : null;
+        }
+        return device;
+    }
+
+    public SensorBinding sensor(int sensorId) {
+        SensorBinding binding = topology().sensors().get(sensorId);
+        if (binding == null) {
+            Topology reloaded = reloadOnMiss();
+            binding = reloaded != null ? reloaded.sensors().get(sensorId) : null;
+        }
+        return binding;
+    }
+
+    /**
+     * Incremented on every reload that finds a change; lets callers cache data derived from the topology.
+     */
+    public long generation() {
+        return topology().generation();
+    }
+
+    /**
+     * Schedules a rebuild of the snapshot. Inside a transaction the rebuild runs after commit
+     * (once per transaction), so the registry never sees uncommitted rows.
+     */
+    public void invalidate() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reloadAfter(System.nanoTime());
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(RELOAD_AFTER_COMMIT)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(RELOAD_AFTER_COMMIT, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(RELOAD_AFTER_COMMIT);
+                if (status == STATUS_COMMITTED) {
+                    reloadAfter(System.nanoTime());
+                }
+            }
+        });
+    }
+
+    /**
+     * Puts sensors written by the current transaction into the snapshot once it commits, instead
+     * of reloading the whole topology. If the snapshot already holds them as they are, it is kept
+     * with its generation.
+     */
+    public void putSensorsAfterCommit(List<SensorBinding> bindings) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            putSensors(bindings);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                putSensors(bindings);
+            }
+        });
+    }
+
+    private synchronized void putSensors(List<SensorBinding> bindings) {
+        Topology current = topology();
+        boolean changed = false;
+        for (SensorBinding binding : bindings) {
+            SensorBinding existing = current.sensors().get(binding.sensorId());
+            if (existing == null || !existing.equals(binding.withSlotOccupied(existing.slotOccupied()))) {
+                changed = true;
+                break;
+            }
+        }
+        if (!changed) {
+            return;
+        }
+        IntObjectMap<SensorBinding> sensors = new IntObjectMap<>(current.sensors().size() + bindings.size());
+        current.sensors().forEachValue(binding -> sensors.put(binding.sensorId(), binding));
+        bindings.forEach(binding -> sensors.put(binding.sensorId(), binding));
+        topology = new Topology(++generation, current.devices(), sensors);
+        log.debug("Device topology updated with {} sensor(s), generation {}", bindings.size(), generation);
+    }
+
+    // A reload that started after the change committed has already seen it
+    private synchronized void reloadAfter(long committedNanos) {
+        if (lastReloadStartedNanos - committedNanos > 0) {
+            return;
+        }
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${device-topology.refresh-interval-ms:60000}",
+            initialDelayString = "${device-topology.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Could not refresh device topology: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reloads for a lookup that missed, unless a reload ran less than miss-reload-interval-ms ago,
+     * so unknown devices reporting in a loop cost at most one reload per interval.
+     *
+     * @return the reloaded snapshot, or null if the miss stands
+     */
+    private Topology reloadOnMiss() {
+        if (System.nanoTime() - lastReloadNanos < missReloadIntervalNanos) {
+            return null;
+        }
+        synchronized (this) {
+            if (System.nanoTime() - lastReloadNanos < missReloadIntervalNanos) {
+                return topology;
+            }
+            return reload();
+        }
+    }
+
+    private Topology topology() {
+        Topology current = topology;
+        if (current == null) {
+            synchronized (this) {
+                current = topology;
+                if (current == null) {
+                    current = reload();
+                }
+            }
+        }
+        return current;
+    }
+
+    public synchronized Topology reload() {
+        lastReloadStartedNanos = System.nanoTime();
+        IntObjectMap<Device> devicesById = new IntObjectMap<>();
+        Map<String, Device> devices = new HashMap<>();
+        jdbcTemplate.query(SELECT_DEVICES, rs -> {
+            String mcCode = rs.getString("mc_code").intern();
+            String mqttUsername = rs.getString("mqtt_username");
+            Device device = new Device(
+                    rs.getInt("mc_id"),
+                    mcCode,
+                    rs.getInt("ps_id"),
+                    mqttUsername != null ? mqttUsername.intern() : null,
+                    mqttUsername != null ? MqttTopicUtil.buildTopic(baseTopic, mqttUsername, "command") : null,
+                    mqttUsername != null ? MqttTopicUtil.buildTopic(baseTopic, mqttUsername, "camera") : null);
+            devices.put(mcCode, device);
+            devicesById.put(device.mcId(), device);
+        });
+
+        IntObjectMap<SensorBinding> sensors = new IntObjectMap<>();
+        jdbcTemplate.query(SELECT_SENSORS, rs -> {
+            Device device = devicesById.get(rs.getInt("mc_id"));
+            if (device == null) {
+                return;
+            }
+            SensorBinding binding = new SensorBinding(
+                    rs.getInt("sensor_id"),
+                    rs.getString("name"),
+                    rs.getString("type"),
+                    rs.getInt("slot_id"),
+                    rs.getString("slot_name"),
+                    rs.getInt("ps_id"),
+                    rs.getBoolean("is_occupied"),
+                    device);
+            sensors.put(binding.sensorId(), binding);
+        });
+
+        lastReloadNanos = System.nanoTime();
+        Topology current = topology;
+        if (current != null && current.devices().equals(devices) && sameSensors(current.sensors(), sensors)) {
+            return current;
+        }
+        Topology loaded = new Topology(++generation, Map.copyOf(devices), sensors);
+        topology = loaded;
+        log.info("Device topology loaded: {} microcontroller(s), {} sensor(s), generation {}",
+                devices.size(), sensors.size(), loaded.generation());
+        return loaded;
+    }
+
+    // slotOccupied is only a seed and changes with every car, so it does not count as a change
+    private static boolean sameSensors(IntObjectMap<SensorBinding> current, IntObjectMap<SensorBinding> loaded) {
+        if (current.size() != loaded.size()) {
+            return false;
+        }
+        boolean[] same = {true};
+        loaded.forEachValue(binding -> {
+            SensorBinding existing = current.get(binding.sensorId());
+            if (existing == null || !existing.equals(binding.withSlotOccupied(existing.slotOccupied()))) {
+                same[0] = false;
+            }
+        });
+        return same[0];
+    }
+
+    public record Topology(long generation, Map<String, Device> devices, IntObjectMap<SensorBinding> sensors) {
+    }
+
+    public record Device(int mcId, String mcCode, int psId, String mqttUsername,
+            String commandTopic, String cameraTopic) {
+    }
+
+    /**
+     * @param slotOccupied slot state at load time; only used to seed occupancy tracking
+     */
+    public record SensorBinding(int sensorId, String name, String type, int slotId, String slotName,
+            int psId, boolean slotOccupied, Device device) {
+
+        SensorBinding withSlotOccupied(boolean occupied) {
+            return occupied == slotOccupied ? this
+                    : new SensorBinding(sensorId, name, type, slotId, slotName, psId, occupied, device);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.smart_parking_system.backend.service.registry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Live index of rfidCode -> (rfid id, parking space, currently used) used to admit or reject
+ * vehicles at the gate without touching the database. Only used with
+ * {@code entry-log.gate.confirm-write=false}; otherwise it is neither loaded nor refreshed.
+ * <p>
+ * A decision and the write that persists it are taken under the card's lock, so writes for one
+ * card are queued in decision order even when entry and exit arrive through different
+ * microcontrollers. If a write fails the card is re-read from the database.
+ * <p>
+ * The write re-checks the card under its row lock and is not waited for. A rejection is never
+ * taken from a copy that may be stale; unless a write of the card is still pending, the card is
+ * re-read and the decision taken again.
+ */
+@Slf4j
+@Service
+public class RfidAdmissionIndex {
+
+    private static final String SELECT_ALL =
+            "SELECT r.rfid_id, r.rfid_code, r.ps_id, r.currently_used FROM rfid r";
+
+    private static final String SELECT_ONE = SELECT_ALL + " WHERE r.rfid_code = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Map<String, Admission> admissions = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public RfidAdmissionIndex(JdbcTemplate jdbcTemplate,
+            @Value("${entry-log.gate.confirm-write:true}") boolean confirmGateWrites) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = !confirmGateWrites;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            load();
+        } catch (Exception e) {
+            log.warn("Could not preload RFID admission index, it will be loaded on first use: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Admits a card into ({@code entering}) or out of a parking space. On success the in-memory
+     * state is updated and {@code persist} is invoked to queue the database write; if that write
+     * fails the card is re-read.
+     *
+     * @return the queued write
+     * @throws RuntimeException with the same messages the entry log service uses when the card is rejected
+     */
+    public CompletableFuture<Integer> admit(String rfidCode, int psId, boolean entering,
+            Supplier<CompletableFuture<Integer>> persist) {
+        boolean reread = false;
+        while (true) {
+            CompletableFuture<Integer> lastWrite;
+            Admission admission = find(rfidCode);
+            if (admission == null) {
+                throw new RuntimeException("RFID not found");
+            }
+            synchronized (admission) {
+                String rejection = rejection(admission, psId, entering);
+                if (rejection == null) {
+                    return accept(rfidCode, admission, entering, persist);
+                }
+                // A pending write holds this card's newest decision, which the database does not show yet
+                if (reread || !admission.settled()) {
+                    throw new RuntimeException(rejection);
+                }
+                lastWrite = admission.lastWrite;
+            }
+            // The copy may be stale (changed by another instance or by hand): re-read it and decide again
+            reread(rfidCode, lastWrite);
+            reread = true;
+        }
+    }
+
+    private static String rejection(Admission admission, int psId, boolean entering) {
+        if (admission.psId != psId) {
+            return "RFID not usable in this parking space";
+        }
+        if (entering && admission.currentlyUsed) {
+            return "This RFID is currently used";
+        }
+        if (!entering && !admission.currentlyUsed) {
+            return "No active entry log for this RFID";
+        }
+        return null;
+    }
+
+    // Caller holds the admission's monitor
+    private CompletableFuture<Integer> accept(String rfidCode, Admission admission, boolean entering,
+            Supplier<CompletableFuture<Integer>> persist) {
+        admission.currentlyUsed = entering;
+        CompletableFuture<Integer> write = persist.get();
+        admission.lastWrite = write;
+        // Off the write thread: the re-read waits for this card's lock, which a decision may hold
+        // while it waits for room behind this write
+        write.whenCompleteAsync((entryLogId, error) -> {
+            if (error != null) {
+                log.error("Persisting gate decision for RFID {} failed, reloading it from the database",
+                        rfidCode, error);
+                reread(rfidCode, write);
+            }
+        });
+        return write;
+    }
+
+    /**
+     * Waits (bounded) until the last queued write for the card has reached the database, so
+     * callers that read the entry log right after a gate decision see it.
+     */
+    public void awaitPersisted(String rfidCode, long timeoutMillis) {
+        Admission admission = admissions.get(rfidCode);
+        if (admission == null) {
+            return;
+        }
+        CompletableFuture<Integer> write;
+        synchronized (admission) {
+            write = admission.lastWrite;
+        }
+        if (write == null) {
+            return;
+        }
+        try {
+            write.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // The caller reads the database either way
+        }
+    }
+
+    /**
+     * Re-reads a card after its row was created, changed or deleted. Inside a transaction this
+     * happens after commit.
+     */
+    public void refreshAfterCommit(String rfidCode) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(rfidCode);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh(rfidCode);
+            }
+        });
+    }
+
+    public void refresh(String rfidCode) {
+        if (!enabled) {
+            return;
+        }
+        apply(rfidCode, read(rfidCode), false, null);
+    }
+
+    // Skips the update if a decision was queued after lastWrite: the row may have been read before
+    // that decision's write landed
+    private void reread(String rfidCode, CompletableFuture<Integer> lastWrite) {
+        apply(rfidCode, read(rfidCode), true, lastWrite);
+    }
+
+    private Admission read(String rfidCode) {
+        List<Admission> rows = jdbcTemplate.query(SELECT_ONE, (rs, rowNum) -> new Admission(
+                rs.getInt("rfid_id"),
+                rs.getInt("ps_id"),
+                rs.getBoolean("currently_used")), rfidCode);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private void apply(String rfidCode, Admission fresh, boolean onlyIfUnchanged,
+            CompletableFuture<Integer> lastWrite) {
+        if (fresh == null) {
+            admissions.remove(rfidCode);
+            return;
+        }
+        Admission existing = admissions.putIfAbsent(rfidCode, fresh);
+        if (existing != null) {
+            synchronized (existing) {
+                if (onlyIfUnchanged && existing.lastWrite != lastWrite) {
+                    return;
+                }
+                existing.rfidId = fresh.rfidId;
+                existing.psId = fresh.psId;
+                existing.currentlyUsed = fresh.currentlyUsed;
+            }
+        }
+    }
+
+    private Admission find(String rfidCode) {
+        if (rfidCode == null) {
+            return null;
+        }
+        if (!loaded) {
+            load();
+        }
+        Admission admission = admissions.get(rfidCode);
+        if (admission == null) {
+            // Card may have been registered since the index was loaded; a concurrent lookup may have
+            // added it and taken a decision meanwhile
+            reread(rfidCode, null);
+            admission = admissions.get(rfidCode);
+        }
+        return admission;
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        jdbcTemplate.query(SELECT_ALL, rs -> {
+            admissions.putIfAbsent(rs.getString("rfid_code"), new Admission(
+                    rs.getInt("rfid_id"),
+                    rs.getInt("ps_id"),
+                    rs.getBoolean("currently_used")));
+        });
+        loaded = true;
+        log.info("RFID admission index loaded: {} card(s)", admissions.size());
+    }
+
+    private static final class Admission {
+
+        private int rfidId;
+        private int psId;
+        private boolean currentlyUsed;
+        private CompletableFuture<Integer> lastWrite;
+
+        private Admission(int rfidId, int psId, boolean currentlyUsed) {
+            this.rfidId = rfidId;
+            this.psId = psId;
+            this.currentlyUsed = currentlyUsed;
+        }
+
+        // Caller holds the monitor; true when no queued write could still change the row
+        private boolean settled() {
+            return lastWrite == null || lastWrite.isDone();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.smart_parking_system.backend.service.session;
+
+import com.smart_parking_system.backend.repository.ActiveSessionRepository;
+import com.smart_parking_system.backend.service.registry.RfidAdmissionIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Brings active_session, rfid.currently_used and the per-parking-space counters back in line with
+ * entry_log after anything wrote around the gate path (manual SQL, edits of rfid rows, data
+ * written before active_session existed). Drifted cards are found with one read that takes no
+ * locks, then repaired {@code batch-size} cards per transaction so the gate never waits on more
+ * than a short batch.
+ */
+@Slf4j
+@Service
+public class ActiveSessionReconciler {
+
+    private final ActiveSessionRepository activeSessionRepository;
+    private final RfidAdmissionIndex admissionIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public ActiveSessionReconciler(ActiveSessionRepository activeSessionRepository,
+                                   RfidAdmissionIndex admissionIndex,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${entry-log.active-session.reconcile-batch-size:500}") int batchSize) {
+        this.activeSessionRepository = activeSessionRepository;
+        this.admissionIndex = admissionIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public void reconcile() {
+        long start = System.currentTimeMillis();
+        List<Integer> drifted = activeSessionRepository.findDrifted();
+
+        int closedLogs = 0;
+        for (int i = 0; i < drifted.size(); i += batchSize) {
+            List<Integer> batch = drifted.subList(i, Math.min(i + batchSize, drifted.size()));
+            ActiveSessionRepository.Repair repair = transactionTemplate.execute(
+                    status -> activeSessionRepository.repair(batch));
+            closedLogs += repair.closedLogs();
+            // Gate decisions come from the in-memory index; it must see the repaired flags
+            repair.rfidCodes().forEach(admissionIndex::refresh);
+        }
+
+        Integer counters = transactionTemplate.execute(status -> activeSessionRepository.reconcileOccupancy());
+
+        if (!drifted.isEmpty() || counters > 0) {
+            log.warn("Reconciled active sessions in {} ms: {} card(s) repaired, {} duplicate open log(s) closed, "
+                    + "{} occupancy counter(s) corrected",
+                    System.currentTimeMillis() - start, drifted.size(), closedLogs, counters);
+        } else {
+            log.debug("Active sessions consistent ({} ms)", System.currentTimeMillis() - start);
+        }
+    }
+}
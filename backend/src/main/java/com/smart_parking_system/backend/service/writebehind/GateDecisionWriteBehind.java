@@ -0,0 +1,83 @@
+package com.smart_parking_system.backend.service.writebehind;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Persists gate decisions (entry log rows, RFID in-use flags) off the MQTT ingestion lanes when
+ * they are taken from the admission index ({@code entry-log.gate.confirm-write=false}).
+ * <p>
+ * Work is striped by RFID code onto single-threaded executors, so the writes for one card run in
+ * the order the decisions were taken. Queues are bounded; a full stripe blocks the submitter
+ * rather than dropping a decision.
+ */
+@Slf4j
+@Service
+public class GateDecisionWriteBehind {
+
+    private final ThreadPoolExecutor[] stripes;
+
+    public GateDecisionWriteBehind(
+            @Value("${entry-log.write-behind.threads:4}") int threads,
+            @Value("${entry-log.write-behind.capacity:1000}") int capacity) {
+        this.stripes = new ThreadPoolExecutor[Math.max(1, threads)];
+        for (int i = 0; i < stripes.length; i++) {
+            String name = "gate-write-" + i;
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(capacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, executor) -> {
+                        if (executor.isShutdown()) {
+                            throw new RejectedExecutionException(name + " is shut down");
+                        }
+                        try {
+                            executor.getQueue().put(runnable);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new RejectedExecutionException("Interrupted while waiting for " + name, e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Queues {@code work} behind earlier work for the same RFID code.
+     */
+    public <T> CompletableFuture<T> submit(String rfidCode, Supplier<T> work) {
+        int hash = rfidCode != null ? rfidCode.hashCode() : 0;
+        ExecutorService stripe = stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+        return CompletableFuture.supplyAsync(work, stripe);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor stripe : stripes) {
+            stripe.shutdown();
+        }
+        for (ThreadPoolExecutor stripe : stripes) {
+            try {
+                if (!stripe.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("Gate decisions still pending at shutdown: {}", stripe.getQueue().size());
+                    stripe.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                stripe.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.smart_parking_system.backend.service.writebehind;
+
+import com.smart_parking_system.backend.service.realtime.RealtimeEventPublisher;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
+import com.smart_parking_system.backend.util.HashedTimingWheel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps microcontroller heartbeats (online, uptime, last seen) in memory and writes them to the
+ * database in periodic JDBC batches instead of one UPDATE per heartbeat.
+ * <p>
+ * Offline detection uses a {@link HashedTimingWheel}: a device is put on the wheel once, at its
+ * offline deadline, and later heartbeats only move the deadline forward. When its bucket comes up
+ * the device is either rescheduled or marked offline. Offline transitions are written with a
+ * guard on {@code last_seen}, so a device whose row was refreshed after the deadline was computed
+ * (a heartbeat written meanwhile, or an edit through the API) is not flipped. The cached state
+ * only goes offline, and the change is only broadcast, when that update changed the row.
+ */
+@Slf4j
+@Service
+public class MicrocontrollerHeartbeatWriteBehind {
+
+    private static final String UPDATE_HEARTBEAT =
+            "UPDATE microcontroller SET online = ?, uptime_sec = COALESCE(?, uptime_sec), last_seen = ? WHERE mc_id = ?";
+
+    private static final String MARK_OFFLINE =
+            "UPDATE microcontroller SET online = false WHERE mc_id = ? AND online = true "
+                    + "AND (last_seen IS NULL OR last_seen < ?)";
+
+    private static final String SELECT_STATUS =
+            "SELECT online, last_seen FROM microcontroller WHERE mc_id = ?";
+
+    private static final String SELECT_ONLINE =
+            "SELECT mc_code, last_seen FROM microcontroller WHERE online = true";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeviceTopologyRegistry topologyRegistry;
+    private final RealtimeEventPublisher eventPublisher;
+    private final long offlineThresholdMillis;
+    private final HashedTimingWheel<Heartbeat> wheel;
+
+    private final Map<Integer, Heartbeat> heartbeats = new ConcurrentHashMap<>();
+
+    public MicrocontrollerHeartbeatWriteBehind(JdbcTemplate jdbcTemplate,
+            DeviceTopologyRegistry topologyRegistry,
+            RealtimeEventPublisher eventPublisher,
+            @Value("${microcontroller.offline-threshold-seconds:10}") int offlineThresholdSeconds,
+            @Value("${microcontroller.status-check-interval-ms:1000}") long tickMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.topologyRegistry = topologyRegistry;
+        this.eventPublisher = eventPublisher;
+        this.offlineThresholdMillis = offlineThresholdSeconds * 1000L;
+        int wheelSize = (int) Math.max(2, offlineThresholdMillis / tickMillis + 1);
+        this.wheel = new HashedTimingWheel<>(tickMillis, wheelSize);
+    }
+
+    /**
+     * Devices that were online when the application stopped get a deadline from their stored
+     * {@code last_seen}, so they go offline if they never report again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void trackPersistedOnlineDevices() {
+        try {
+            jdbcTemplate.query(SELECT_ONLINE, rs -> {
+                DeviceTopologyRegistry.Device device = topologyRegistry.device(rs.getString("mc_code"));
+                if (device == null) {
+                    return;
+                }
+                Timestamp lastSeen = rs.getTimestamp("last_seen");
+                Heartbeat heartbeat = heartbeats.computeIfAbsent(device.mcId(), id -> new Heartbeat(device));
+                synchronized (heartbeat) {
+                    heartbeat.online = true;
+                    heartbeat.lastSeenMillis = lastSeen != null ? lastSeen.getTime() : 0L;
+                    scheduleIfIdle(heartbeat);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Could not load online microcontrollers for offline tracking: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Records a heartbeat. O(1): touches the device's in-memory state and, at most, one wheel bucket.
+     */
+    public void recordHeartbeat(DeviceTopologyRegistry.Device device, boolean online, Long uptimeSec) {
+        Heartbeat heartbeat = heartbeats.computeIfAbsent(device.mcId(), id -> new Heartbeat(device));
+        boolean changed;
+        long now = System.currentTimeMillis();
+        synchronized (heartbeat) {
+            changed = heartbeat.online != online;
+            heartbeat.online = online;
+            heartbeat.lastSeenMillis = now;
+            if (uptimeSec != null) {
+                heartbeat.uptimeSec = uptimeSec;
+            }
+            heartbeat.dirty = true;
+            if (online) {
+                scheduleIfIdle(heartbeat);
+            }
+        }
+        if (changed) {
+            eventPublisher.publishMicrocontrollerStatusChanged(device.mcId(), device.mcCode(), online,
+                    Instant.ofEpochMilli(now), device.psId());
+        }
+    }
+
+    public void forget(Integer mcId) {
+        heartbeats.remove(mcId);
+    }
+
+    @Scheduled(fixedDelayString = "${microcontroller.heartbeat.flush-interval-ms:2000}")
+    public void flush() {
+        List<Object[]> batch = new ArrayList<>();
+        List<Heartbeat> flushed = new ArrayList<>();
+        for (Heartbeat heartbeat : heartbeats.values()) {
+            synchronized (heartbeat) {
+                if (!heartbeat.dirty) {
+                    continue;
+                }
+                heartbeat.dirty = false;
+                batch.add(new Object[] {
+                        heartbeat.online,
+                        heartbeat.uptimeSec,
+                        new Timestamp(heartbeat.lastSeenMillis),
+                        heartbeat.device.mcId() });
+            }
+            flushed.add(heartbeat);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_HEARTBEAT, batch);
+            log.debug("Flushed {} microcontroller heartbeat(s)", batch.size());
+        } catch (Exception e) {
+            log.error("Failed to flush {} microcontroller heartbeat(s), will retry", batch.size(), e);
+            for (Heartbeat heartbeat : flushed) {
+                synchronized (heartbeat) {
+                    heartbeat.dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances the timing wheel and marks every device whose deadline has passed as offline.
+     */
+    public int expireOverdue() {
+        long now = System.currentTimeMillis();
+        List<Heartbeat> expired = new ArrayList<>();
+        wheel.advance(now, heartbeat -> {
+            synchronized (heartbeat) {
+                heartbeat.scheduled = false;
+                if (!heartbeat.online || heartbeats.get(heartbeat.device.mcId()) != heartbeat) {
+                    return;
+                }
+                if (heartbeat.lastSeenMillis + offlineThresholdMillis > now) {
+                    scheduleIfIdle(heartbeat);
+                    return;
+                }
+                expired.add(heartbeat);
+            }
+        });
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp threshold = new Timestamp(now - offlineThresholdMillis);
+        List<Object[]> batch = new ArrayList<>(expired.size());
+        for (Heartbeat heartbeat : expired) {
+            batch.add(new Object[] { heartbeat.device.mcId(), threshold });
+        }
+        int[] updated = jdbcTemplate.batchUpdate(MARK_OFFLINE, batch);
+
+        int markedOffline = 0;
+        for (int i = 0; i < expired.size(); i++) {
+            Heartbeat heartbeat = expired.get(i);
+            // Statement.SUCCESS_NO_INFO (-2) means the driver did not report a count; assume it applied
+            if (updated[i] == 0) {
+                adoptPersistedStatus(heartbeat);
+                continue;
+            }
+            synchronized (heartbeat) {
+                // A heartbeat that arrived during the update keeps the device online; its flush rewrites the row
+                if (heartbeat.lastSeenMillis + offlineThresholdMillis > now) {
+                    scheduleIfIdle(heartbeat);
+                    continue;
+                }
+                heartbeat.online = false;
+            }
+            markedOffline++;
+            log.info("Microcontroller {} marked offline (last seen: {})",
+                    heartbeat.device.mcCode(), Instant.ofEpochMilli(heartbeat.lastSeenMillis));
+            eventPublisher.publishMicrocontrollerStatusChanged(heartbeat.device.mcId(), heartbeat.device.mcCode(),
+                    false, Instant.ofEpochMilli(heartbeat.lastSeenMillis), heartbeat.device.psId());
+        }
+        return markedOffline;
+    }
+
+    /**
+     * The guarded update changed nothing: the row was refreshed elsewhere (a heartbeat handled by
+     * another instance, an edit through the API) or is already offline. The cached state follows the
+     * row, so the device is tracked from its stored {@code last_seen} instead of being retried every tick.
+     */
+    private void adoptPersistedStatus(Heartbeat heartbeat) {
+        List<Object[]> rows = jdbcTemplate.query(SELECT_STATUS,
+                (rs, rowNum) -> new Object[] { rs.getBoolean("online"), rs.getTimestamp("last_seen") },
+                heartbeat.device.mcId());
+        synchronized (heartbeat) {
+            if (rows.isEmpty()) {
+                heartbeat.online = false;
+                return;
+            }
+            Timestamp lastSeen = (Timestamp) rows.get(0)[1];
+            if (lastSeen != null && lastSeen.getTime() > heartbeat.lastSeenMillis) {
+                heartbeat.lastSeenMillis = lastSeen.getTime();
+            }
+            heartbeat.online = heartbeat.dirty ? heartbeat.online : (Boolean) rows.get(0)[0];
+            if (heartbeat.online) {
+                scheduleIfIdle(heartbeat);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // Caller holds the heartbeat's monitor
+    private void scheduleIfIdle(Heartbeat heartbeat) {
+        if (!heartbeat.scheduled) {
+            heartbeat.scheduled = true;
+            wheel.schedule(heartbeat, heartbeat.lastSeenMillis + offlineThresholdMillis);
+        }
+    }
+
+    private static final class Heartbeat {
+
+        private final DeviceTopologyRegistry.Device device;
+        private boolean online;
+        private Long uptimeSec;
+        private long lastSeenMillis;
+        private boolean dirty;
+        private boolean scheduled;
+
+        private Heartbeat(DeviceTopologyRegistry.Device device) {
+            this.device = device;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.smart_parking_system.backend.service.writebehind;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for slot occupancy coming from ultrasonic sensors.
+ * Readings for the same slot inside one flush window collapse to the latest value, and the
+ * surviving changes are written as a single JDBC batch. The last known state of every slot
+ * is kept in memory so only readings that actually flip it are written.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SlotOccupancyWriteBehind {
+
+    private static final String UPDATE_SLOT_OCCUPANCY = "UPDATE slot SET is_occupied = ? WHERE slot_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Integer, Boolean> knownOccupancy = new ConcurrentHashMap<>();
+    private final Map<Integer, Boolean> pendingWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Records a sensor reading for a slot.
+     *
+     * @param persistedOccupied state loaded from the database, used the first time the slot is seen
+     */
+    public void record(Integer slotId, boolean occupied, Boolean persistedOccupied) {
+        Boolean previous = knownOccupancy.put(slotId, occupied);
+        if (previous == null) {
+            previous = Boolean.TRUE.equals(persistedOccupied);
+        }
+        if (previous != occupied) {
+            pendingWrites.put(slotId, occupied);
+        }
+    }
+
+    /**
+     * Called after the slot was written through another path (e.g. a manual status update),
+     * so a buffered sensor reading does not overwrite it.
+     */
+    public void markPersisted(Integer slotId, Boolean occupied) {
+        pendingWrites.remove(slotId);
+        knownOccupancy.put(slotId, Boolean.TRUE.equals(occupied));
+    }
+
+    public void forget(Integer slotId) {
+        pendingWrites.remove(slotId);
+        knownOccupancy.remove(slotId);
+    }
+
+    @Scheduled(fixedDelayString = "${sensor.write-behind.flush-interval-ms:250}")
+    public void flush() {
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<Integer, Boolean> entry : pendingWrites.entrySet()) {
+            // Conditional remove: a reading that lands meanwhile stays queued for the next window
+            if (pendingWrites.remove(entry.getKey(), entry.getValue())) {
+                batch.add(new Object[] { entry.getValue(), entry.getKey() });
+            }
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SLOT_OCCUPANCY, batch);
+            log.debug("Flushed {} slot occupancy change(s)", batch.size());
+        } catch (Exception e) {
+            log.error("Failed to flush {} slot occupancy change(s), requeueing", batch.size(), e);
+            for (Object[] row : batch) {
+                pendingWrites.putIfAbsent((Integer) row[1], (Boolean) row[0]);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,66 @@
+package com.smart_parking_system.backend.util;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: a ring of buckets, one per tick, into which keys are dropped by deadline.
+ * Scheduling is O(1) and each tick only looks at the keys in one bucket.
+ * <p>
+ * There is no cancellation and no round counter. Deadlines further out than one revolution come
+ * up early, and a key whose deadline moved after it was scheduled still comes up at the old slot;
+ * the {@code onDue} callback is expected to re-check the real deadline and {@link #schedule} the
+ * key again if it is not actually due yet.
+ */
+public final class HashedTimingWheel<K> {
+
+    private final long tickMillis;
+    private final ArrayDeque<K>[] buckets;
+    private long processedTick = -1;
+
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    public synchronized void schedule(K key, long deadlineMillis) {
+        long tick = deadlineMillis / tickMillis;
+        if (processedTick < 0) {
+            processedTick = System.currentTimeMillis() / tickMillis - 1;
+        }
+        // Past deadlines go into the next bucket to be processed
+        tick = Math.max(tick, processedTick + 1);
+        tick = Math.min(tick, processedTick + buckets.length);
+        buckets[(int) (tick % buckets.length)].add(key);
+    }
+
+    /**
+     * Drains every bucket up to {@code nowMillis} and hands each key to {@code onDue}. The callback
+     * runs outside the wheel lock, so it may call {@link #schedule}.
+     */
+    public void advance(long nowMillis, Consumer<K> onDue) {
+        ArrayDeque<K> due = new ArrayDeque<>();
+        synchronized (this) {
+            long nowTick = nowMillis / tickMillis;
+            if (processedTick < 0) {
+                processedTick = nowTick - 1;
+            }
+            // After a long pause there is no point walking the same buckets more than once
+            long from = Math.max(processedTick + 1, nowTick - buckets.length + 1);
+            for (long tick = from; tick <= nowTick; tick++) {
+                ArrayDeque<K> bucket = buckets[(int) (tick % buckets.length)];
+                due.addAll(bucket);
+                bucket.clear();
+            }
+            processedTick = Math.max(processedTick, nowTick);
+        }
+        due.forEach(onDue);
+    }
+}
@@ -9,17 +9,6 @@ public final class MqttTopicUtil {
         // Utility class
     }
 
-    public static String extractMqttUsername(String topic) {
-        if (topic == null || topic.isEmpty()) {
-            return null;
-        }
-        String[] parts = topic.split("/");
-        if (parts.length < 2) {
-            return null;
-        }
-        return parts[1];
-    }
-
     public static String extractOwnerUsername(String mqttUsername) {
         if (mqttUsername == null || !mqttUsername.contains("_")) {
             return null;
@@ -39,15 +28,4 @@ public final class MqttTopicUtil {
     public static String buildTopic(String baseTopic, String mqttUsername, String subtopic) {
         return baseTopic + "/" + mqttUsername + "/" + subtopic;
     }
-
-    public static boolean topicEndsWith(String topic, String expectedSuffix) {
-        return topic != null && topic.endsWith(expectedSuffix);
-    }
-
-    public static boolean hasMinimumParts(String topic, int minParts) {
-        if (topic == null) {
-            return false;
-        }
-        return topic.split("/").length >= minParts;
-    }
 }
@@ -0,0 +1,59 @@
+package com.smart_parking_system.backend.util;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 64-bit difference hash (dHash) of an image.
+ * <p>
+ * The image is reduced to a 9x8 grid of average luminance; each bit says whether a cell is darker
+ * than its right-hand neighbour. Re-encoding, small shifts and lighting changes flip only a few
+ * bits, so two frames of the same scene have a small {@link #distance(long, long) Hamming
+ * distance} while different scenes differ in about half of the 64 bits.
+ */
+public final class PerceptualHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+
+    private PerceptualHash() {
+    }
+
+    public static long differenceHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[COLUMNS * ROWS];
+        int[] counts = new int[COLUMNS * ROWS];
+
+        for (int y = 0; y < height; y++) {
+            int row = y * ROWS / height;
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(x, y);
+                int luminance = (299 * ((rgb >> 16) & 0xff) + 587 * ((rgb >> 8) & 0xff) + 114 * (rgb & 0xff)) / 1000;
+                int cell = row * COLUMNS + x * COLUMNS / width;
+                sums[cell] += luminance;
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                int cell = row * COLUMNS + column;
+                hash <<= 1;
+                if (average(sums, counts, cell) < average(sums, counts, cell + 1)) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static long average(long[] sums, int[] counts, int cell) {
+        // Images narrower than 9 or shorter than 8 pixels leave some cells empty
+        return counts[cell] == 0 ? 0 : sums[cell] / counts[cell];
+    }
+}
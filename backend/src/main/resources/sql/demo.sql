@@ -169,7 +169,9 @@ INSERT INTO "lcd" ("name","display","mc_id") VALUES
 -- Past completed sessions from the last 30 days
 
 -- Hoan Kiem Parking - Completed sessions
-INSERT INTO "entry_log" ("rfid_id","license_plate","in_time","out_time") VALUES
+INSERT INTO "entry_log" ("rfid_id","ps_id","license_plate","in_time","out_time")
+SELECT v.rfid_id, r.ps_id, v.license_plate, v.in_time, v.out_time::timestamp
+FROM (VALUES
 -- 30 days ago
 (1, '29A-12345', now() - interval '30 days' - interval '3 hours', now() - interval '30 days' - interval '1 hour'),
 (2, '30B-67890', now() - interval '29 days' - interval '5 hours', now() - interval '29 days' - interval '3 hours'),
@@ -274,17 +276,40 @@ INSERT INTO "entry_log" ("rfid_id","license_plate","in_time","out_time") VALUES
 
 -- Ba Dinh Parking - 2 vehicles currently parked (slots 5 and 7 occupied)
 (5, '29A-12345', now() - interval '3 hours 15 minutes', null),
-(7, '30A-67890', now() - interval '1 hour 45 minutes', null);
+(7, '30A-67890', now() - interval '1 hour 45 minutes', null)) AS v(rfid_id, license_plate, in_time, out_time)
+JOIN "rfid" r ON r.rfid_id = v.rfid_id;
 
 -- ============================================================================
 -- ENTRY LOGS - RECENT ENTRY (Just arrived)
 -- ============================================================================
 
 -- Just entered in the last 30 minutes
-INSERT INTO "entry_log" ("rfid_id","license_plate","in_time","out_time") VALUES
+INSERT INTO "entry_log" ("rfid_id","ps_id","license_plate","in_time","out_time")
+SELECT v.rfid_id, r.ps_id, v.license_plate, v.in_time, v.out_time::timestamp
+FROM (VALUES
 (2, '29Z-88888', now() - interval '25 minutes', null),
 (6, '30X-77777', now() - interval '15 minutes', null),
-(8, '29AA-66666', now() - interval '10 minutes', null);
+(8, '29AA-66666', now() - interval '10 minutes', null)) AS v(rfid_id, license_plate, in_time, out_time)
+JOIN "rfid" r ON r.rfid_id = v.rfid_id;
+
+-- ============================================================================
+-- ACTIVE SESSIONS AND OCCUPANCY (derived from the open entry logs above)
+-- ============================================================================
+
+INSERT INTO "active_session" ("rfid_id","log_id","in_time","ps_id")
+SELECT DISTINCT ON (rfid_id) rfid_id, log_id, in_time, ps_id
+FROM "entry_log"
+WHERE out_time IS NULL
+ORDER BY rfid_id, in_time DESC, log_id DESC;
+
+INSERT INTO "parking_space_occupancy" ("ps_id","vehicles_inside")
+SELECT ps.ps_id, count(a.rfid_id)
+FROM "parking_space" ps
+LEFT JOIN "active_session" a ON a.ps_id = ps.ps_id
+GROUP BY ps.ps_id;
+
+UPDATE "rfid" r
+SET currently_used = EXISTS (SELECT 1 FROM "active_session" a WHERE a.rfid_id = r.rfid_id);
 
 -- ============================================================================
 -- COMMENTS AND STATISTICS
@@ -0,0 +1,24 @@
+-- Upgrades a database created from an older schema.sql: denormalizes the parking space onto
+-- entry_log and adds the indexes behind GET /api/entry-logs/page.
+-- Run with psql outside a transaction block (CREATE INDEX CONCURRENTLY does not lock out writers).
+
+ALTER TABLE entry_log ADD COLUMN IF NOT EXISTS ps_id int;
+
+-- On very large tables, repeat with "AND el.log_id BETWEEN x AND y" to keep each transaction short
+UPDATE entry_log el
+SET ps_id = r.ps_id
+FROM rfid r
+WHERE r.rfid_id = el.rfid_id
+  AND el.ps_id IS NULL;
+
+ALTER TABLE entry_log ALTER COLUMN ps_id SET NOT NULL;
+
+ALTER TABLE entry_log
+    ADD CONSTRAINT fk_entry_log_parking_space
+        FOREIGN KEY (ps_id) REFERENCES parking_space (ps_id)
+            ON DELETE CASCADE;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_entry_log_rfid_in_time ON entry_log(rfid_id, in_time DESC, log_id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_entry_log_ps_in_time ON entry_log(ps_id, in_time DESC, log_id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_entry_log_ps_active ON entry_log(ps_id, in_time DESC, log_id DESC) WHERE out_time IS NULL;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_entry_log_ps_plate ON entry_log(ps_id, license_plate varchar_pattern_ops);
@@ -0,0 +1,80 @@
+-- Upgrades a database created from an older schema.sql: turns entry_log into a table partitioned by
+-- month of in_time. Once the backend runs, EntryLogPartitionManager creates the coming months'
+-- partitions and archives the expired ones.
+-- The table is rewritten: stop the backend and run in a single transaction (psql -1 -f ...).
+
+ALTER TABLE entry_log RENAME TO entry_log_unpartitioned;
+ALTER TABLE entry_log_unpartitioned RENAME CONSTRAINT entry_log_pkey TO entry_log_unpartitioned_pkey;
+ALTER SEQUENCE entry_log_log_id_seq RENAME TO entry_log_unpartitioned_log_id_seq;
+DROP INDEX IF EXISTS ux_entry_log_active_rfid, idx_entry_log_rfid_in_time, idx_entry_log_ps_in_time,
+    idx_entry_log_ps_active, idx_entry_log_ps_plate;
+
+CREATE TABLE "entry_log" (
+                             "log_id" INT GENERATED BY DEFAULT AS IDENTITY,
+                             "rfid_id" int NOT NULL,
+                             "ps_id" int NOT NULL,
+                             "license_plate" varchar,
+                             "license_plate_image_key" varchar,
+                             "in_time" timestamp NOT NULL,
+                             "out_time" timestamp,
+                             PRIMARY KEY ("log_id", "in_time")
+) PARTITION BY RANGE ("in_time");
+
+-- One partition per month from the oldest log up to three months ahead
+DO $$
+DECLARE
+    month date;
+    last_month date := date_trunc('month', localtimestamp + interval '3 months');
+BEGIN
+    SELECT date_trunc('month', coalesce(min(coalesce(in_time, out_time)), localtimestamp))
+    INTO month
+    FROM entry_log_unpartitioned;
+
+    WHILE month <= last_month LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF entry_log FOR VALUES FROM (%L) TO (%L)',
+                       'entry_log_p' || to_char(month, 'YYYY_MM'), month, month + interval '1 month');
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO entry_log (log_id, rfid_id, ps_id, license_plate, license_plate_image_key, in_time, out_time)
+SELECT log_id, rfid_id, ps_id, license_plate, license_plate_image_key,
+       coalesce(in_time, out_time, localtimestamp), out_time
+FROM entry_log_unpartitioned;
+
+SELECT setval(pg_get_serial_sequence('entry_log', 'log_id'), coalesce(max(log_id), 0) + 1, false)
+FROM entry_log;
+
+DROP TABLE entry_log_unpartitioned;
+
+ALTER TABLE "entry_log"
+    ADD CONSTRAINT "fk_entry_log_rfid"
+        FOREIGN KEY ("rfid_id") REFERENCES "rfid" ("rfid_id")
+            ON DELETE CASCADE;
+
+ALTER TABLE "entry_log"
+    ADD CONSTRAINT "fk_entry_log_parking_space"
+        FOREIGN KEY ("ps_id") REFERENCES "parking_space" ("ps_id")
+            ON DELETE CASCADE;
+
+-- A unique index on the partitioned table would have to include in_time, so the one-open-session
+-- rule is enforced per partition
+DO $$
+DECLARE
+    partition_name text;
+BEGIN
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'entry_log'::regclass
+    LOOP
+        EXECUTE format('CREATE UNIQUE INDEX %I ON %I (rfid_id) WHERE out_time IS NULL',
+                       partition_name || '_active_rfid', partition_name);
+    END LOOP;
+END $$;
+
+CREATE INDEX idx_entry_log_rfid_in_time ON entry_log(rfid_id, in_time DESC, log_id DESC);
+CREATE INDEX idx_entry_log_ps_in_time ON entry_log(ps_id, in_time DESC, log_id DESC);
+CREATE INDEX idx_entry_log_ps_active ON entry_log(ps_id, in_time DESC, log_id DESC) WHERE out_time IS NULL;
+CREATE INDEX idx_entry_log_ps_plate ON entry_log(ps_id, license_plate varchar_pattern_ops);
+
+ANALYZE entry_log;
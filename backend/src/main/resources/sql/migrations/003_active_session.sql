@@ -0,0 +1,57 @@
+-- Upgrades a database created from an older schema.sql: adds active_session (one row per card whose
+-- vehicle is inside) and parking_space_occupancy (vehicles inside per parking space), filled from the
+-- open entry logs. If a card has several open logs the newest one becomes its session; the backend's
+-- reconciliation job closes the others.
+-- Stop the backend and run in a single transaction (psql -1 -f ...).
+
+CREATE TABLE "active_session" (
+                                  "rfid_id" int PRIMARY KEY,
+                                  "log_id" int NOT NULL,
+                                  "in_time" timestamp NOT NULL,
+                                  "ps_id" int NOT NULL
+);
+
+CREATE TABLE "parking_space_occupancy" (
+                                           "ps_id" int PRIMARY KEY,
+                                           "vehicles_inside" int NOT NULL DEFAULT 0
+);
+
+INSERT INTO active_session (rfid_id, log_id, in_time, ps_id)
+SELECT DISTINCT ON (rfid_id) rfid_id, log_id, in_time, ps_id
+FROM entry_log
+WHERE out_time IS NULL
+ORDER BY rfid_id, in_time DESC, log_id DESC;
+
+INSERT INTO parking_space_occupancy (ps_id, vehicles_inside)
+SELECT ps.ps_id, count(a.rfid_id)
+FROM parking_space ps
+LEFT JOIN active_session a ON a.ps_id = ps.ps_id
+GROUP BY ps.ps_id;
+
+UPDATE rfid r
+SET currently_used = EXISTS (SELECT 1 FROM active_session a WHERE a.rfid_id = r.rfid_id)
+WHERE r.currently_used IS DISTINCT FROM EXISTS (SELECT 1 FROM active_session a WHERE a.rfid_id = r.rfid_id);
+
+ALTER TABLE "active_session"
+    ADD CONSTRAINT "fk_active_session_rfid"
+        FOREIGN KEY ("rfid_id") REFERENCES "rfid" ("rfid_id")
+            ON DELETE CASCADE;
+
+ALTER TABLE "active_session"
+    ADD CONSTRAINT "fk_active_session_entry_log"
+        FOREIGN KEY ("log_id", "in_time") REFERENCES "entry_log" ("log_id", "in_time")
+            ON DELETE CASCADE;
+
+ALTER TABLE "active_session"
+    ADD CONSTRAINT "fk_active_session_parking_space"
+        FOREIGN KEY ("ps_id") REFERENCES "parking_space" ("ps_id")
+            ON DELETE CASCADE;
+
+ALTER TABLE "parking_space_occupancy"
+    ADD CONSTRAINT "fk_parking_space_occupancy_ps"
+        FOREIGN KEY ("ps_id") REFERENCES "parking_space" ("ps_id")
+            ON DELETE CASCADE;
+
+CREATE INDEX idx_active_session_ps ON active_session(ps_id);
+
+ANALYZE active_session, parking_space_occupancy, rfid;
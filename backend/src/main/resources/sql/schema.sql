@@ -1,4 +1,5 @@
-DROP TABLE IF EXISTS "users", "parking_space", "user_parking_space", "microcontroller", "slot", "sensor", "rfid", "entry_log", "door", "lcd";
+DROP TABLE IF EXISTS "users", "parking_space", "user_parking_space", "microcontroller", "slot", "sensor", "rfid", "entry_log", "door", "lcd",
+    "active_session", "parking_space_occupancy";
 
 CREATE TABLE "users" (
                          "user_id" INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -73,13 +74,50 @@ CREATE TABLE "rfid" (
                         "currently_used" boolean DEFAULT false
 );
 
+-- Partitioned by month of in_time; the backend creates upcoming partitions and archives expired ones
 CREATE TABLE "entry_log" (
-                             "log_id" INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                             "log_id" INT GENERATED BY DEFAULT AS IDENTITY,
                              "rfid_id" int NOT NULL,
+                             "ps_id" int NOT NULL,
                              "license_plate" varchar,
                              "license_plate_image_key" varchar,
-                             "in_time" timestamp,
-                             "out_time" timestamp
+                             "in_time" timestamp NOT NULL,
+                             "out_time" timestamp,
+                             PRIMARY KEY ("log_id", "in_time")
+) PARTITION BY RANGE ("in_time");
+
+-- The past year (room for demo data) up to three months ahead. A unique index on the partitioned
+-- table would have to include in_time, so the one-open-session-per-card rule is a per-partition index
+DO $$
+DECLARE
+    month date := date_trunc('month', localtimestamp - interval '12 months');
+    last_month date := date_trunc('month', localtimestamp + interval '3 months');
+    partition_name text;
+BEGIN
+    WHILE month <= last_month LOOP
+        partition_name := 'entry_log_p' || to_char(month, 'YYYY_MM');
+        EXECUTE format('CREATE TABLE %I PARTITION OF entry_log FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month, month + interval '1 month');
+        EXECUTE format('CREATE UNIQUE INDEX %I ON %I (rfid_id) WHERE out_time IS NULL',
+                       partition_name || '_active_rfid', partition_name);
+        month := month + interval '1 month';
+    END LOOP;
+END $$;
+
+-- One row per card whose vehicle is inside: the open entry_log row and where it parked. Written in
+-- the same transaction as entry_log, so "is this card inside" and "who is inside" are key lookups
+-- that never scan the log partitions
+CREATE TABLE "active_session" (
+                                  "rfid_id" int PRIMARY KEY,
+                                  "log_id" int NOT NULL,
+                                  "in_time" timestamp NOT NULL,
+                                  "ps_id" int NOT NULL
+);
+
+-- Vehicles inside per parking space, kept next to active_session; the reconciliation job repairs drift
+CREATE TABLE "parking_space_occupancy" (
+                                           "ps_id" int PRIMARY KEY,
+                                           "vehicles_inside" int NOT NULL DEFAULT 0
 );
 
 COMMENT ON COLUMN "users"."role" IS 'ROLE_USER | ROLE_ADMIN';
@@ -133,6 +171,39 @@ ALTER TABLE "entry_log"
         FOREIGN KEY ("rfid_id") REFERENCES "rfid" ("rfid_id")
             ON DELETE CASCADE;
 
+ALTER TABLE "entry_log"
+    ADD CONSTRAINT "fk_entry_log_parking_space"
+        FOREIGN KEY ("ps_id") REFERENCES "parking_space" ("ps_id")
+            ON DELETE CASCADE;
+
+ALTER TABLE "active_session"
+    ADD CONSTRAINT "fk_active_session_rfid"
+        FOREIGN KEY ("rfid_id") REFERENCES "rfid" ("rfid_id")
+            ON DELETE CASCADE;
+
+ALTER TABLE "active_session"
+    ADD CONSTRAINT "fk_active_session_entry_log"
+        FOREIGN KEY ("log_id", "in_time") REFERENCES "entry_log" ("log_id", "in_time")
+            ON DELETE CASCADE;
+
+ALTER TABLE "active_session"
+    ADD CONSTRAINT "fk_active_session_parking_space"
+        FOREIGN KEY ("ps_id") REFERENCES "parking_space" ("ps_id")
+            ON DELETE CASCADE;
+
+ALTER TABLE "parking_space_occupancy"
+    ADD CONSTRAINT "fk_parking_space_occupancy_ps"
+        FOREIGN KEY ("ps_id") REFERENCES "parking_space" ("ps_id")
+            ON DELETE CASCADE;
+
+CREATE INDEX idx_active_session_ps ON active_session(ps_id);
+
+-- Keyset pagination: per-card history, per-lot listing, vehicles still inside, plate prefix search
+CREATE INDEX idx_entry_log_rfid_in_time ON entry_log(rfid_id, in_time DESC, log_id DESC);
+CREATE INDEX idx_entry_log_ps_in_time ON entry_log(ps_id, in_time DESC, log_id DESC);
+CREATE INDEX idx_entry_log_ps_active ON entry_log(ps_id, in_time DESC, log_id DESC) WHERE out_time IS NULL;
+CREATE INDEX idx_entry_log_ps_plate ON entry_log(ps_id, license_plate varchar_pattern_ops);
+
 ALTER TABLE users ADD COLUMN mqtt_username VARCHAR(255) UNIQUE;
 ALTER TABLE users ADD COLUMN mqtt_password_hash VARCHAR(255);
 
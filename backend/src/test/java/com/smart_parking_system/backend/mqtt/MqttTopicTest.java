@@ -0,0 +1,32 @@
+package com.smart_parking_system.backend.mqtt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MqttTopicTest {
+
+	@Test
+	void parsesDeviceTopics() {
+		MqttTopic topic = MqttTopic.parse("sps/alice_bob_mc1/sensor/status", "sps");
+
+		assertEquals("alice_bob_mc1", topic.mqttUsername());
+		assertEquals("alice_bob", topic.ownerUsername());
+		assertEquals("mc1", topic.mcCode());
+		assertEquals(MqttMessageKind.SENSOR_STATUS, topic.kind());
+
+		assertEquals(MqttMessageKind.STATUS, MqttTopic.parse("sps/alice_mc1/status", "sps").kind());
+		assertEquals(MqttMessageKind.EXIT_REQUEST, MqttTopic.parse("sps/alice_mc1/exit/request", "sps").kind());
+	}
+
+	@Test
+	void rejectsUnknownOrMalformedTopics() {
+		assertNull(MqttTopic.parse("sps/alice_mc1/provision/response", "sps"));
+		assertNull(MqttTopic.parse("sps/alice_mc1/entry/request/extra", "sps"));
+		assertNull(MqttTopic.parse("sps/alicemc1/status", "sps"));
+		assertNull(MqttTopic.parse("spsx/alice_mc1/status", "sps"));
+		assertNull(MqttTopic.parse("sps//status", "sps"));
+		assertNull(MqttTopic.parse(null, "sps"));
+	}
+}
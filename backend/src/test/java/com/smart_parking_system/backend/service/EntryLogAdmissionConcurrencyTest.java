@@ -0,0 +1,298 @@
+package com.smart_parking_system.backend.service;
+
+import com.smart_parking_system.backend.config.AuditorAwareImpl;
+import com.smart_parking_system.backend.repository.ActiveSessionRepository;
+import com.smart_parking_system.backend.repository.EntryLogExportRepository;
+import com.smart_parking_system.backend.service.impl.EntryLogServiceImpl;
+import com.smart_parking_system.backend.service.lpr.LicensePlateRecognitionQueue;
+import com.smart_parking_system.backend.service.realtime.RealtimeEventPublisher;
+import com.smart_parking_system.backend.service.registry.DeviceTopologyRegistry;
+import com.smart_parking_system.backend.service.registry.RfidAdmissionIndex;
+import com.smart_parking_system.backend.service.writebehind.GateDecisionWriteBehind;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fires thousands of concurrent entry/exit requests at a handful of cards through the gate path
+ * (the locked database write, or with confirm-write=false the admission index and write-behind in
+ * front of it) and checks that no card ever has two open sessions.
+ * <p>
+ * Opt-in: the schema relies on PostgreSQL (partitioning, ON CONFLICT), so the test is skipped unless
+ * SPS_TEST_DATABASE_URL points at a scratch database with sql/schema.sql applied, e.g.
+ * jdbc:postgresql://localhost:5434/sps_test (SPS_TEST_DATABASE_USERNAME / _PASSWORD default to postgres).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@EnabledIfEnvironmentVariable(named = "SPS_TEST_DATABASE_URL", matches = ".+")
+@Import({EntryLogServiceImpl.class, ActiveSessionRepository.class, RfidAdmissionIndex.class,
+		GateDecisionWriteBehind.class, AuditorAwareImpl.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EntryLogAdmissionConcurrencyTest {
+
+	private static final String MC_CODE = "stress-mc";
+	private static final int CARDS = 20;
+	private static final int REQUESTS = 4000;
+	private static final int THREADS = 32;
+
+	private static final Set<String> REJECTIONS = Set.of(
+			"This RFID is currently used",
+			"This RFID already has an active entry log",
+			"No active entry log for this RFID");
+
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", () -> System.getenv("SPS_TEST_DATABASE_URL"));
+		registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+		registry.add("spring.datasource.username", () -> envOrDefault("SPS_TEST_DATABASE_USERNAME", "postgres"));
+		registry.add("spring.datasource.password", () -> envOrDefault("SPS_TEST_DATABASE_PASSWORD", "postgres"));
+		registry.add("spring.datasource.hikari.maximum-pool-size", () -> THREADS + 2);
+		registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+		registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+	}
+
+	@Autowired
+	private IEntryLogService entryLogService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private RfidAdmissionIndex admissionIndex;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Value("${entry-log.gate.confirm-write:true}")
+	private boolean confirmGateWrites;
+
+	@MockitoBean
+	private RealtimeEventPublisher eventPublisher;
+
+	@MockitoBean
+	private DeviceTopologyRegistry topologyRegistry;
+
+	@MockitoBean
+	private LicensePlateRecognitionQueue lprQueue;
+
+	@MockitoBean
+	private EntryLogExportRepository entryLogExportRepository;
+
+	private int psId;
+	private final List<String> cards = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		psId = jdbcTemplate.queryForObject(
+				"INSERT INTO parking_space (name, owner) VALUES ('stress', 'stress') RETURNING ps_id", Integer.class);
+		String prefix = "STRESS-" + UUID.randomUUID() + "-";
+		for (int i = 0; i < CARDS; i++) {
+			cards.add(prefix + i);
+			jdbcTemplate.update("INSERT INTO rfid (rfid_code, ps_id, currently_used) VALUES (?, ?, false)",
+					prefix + i, psId);
+		}
+		when(topologyRegistry.device(MC_CODE))
+				.thenReturn(new DeviceTopologyRegistry.Device(0, MC_CODE, psId, null, null, null));
+	}
+
+	@AfterEach
+	void tearDown() {
+		jdbcTemplate.update("DELETE FROM entry_log WHERE rfid_id IN (SELECT rfid_id FROM rfid WHERE ps_id = ?)", psId);
+		jdbcTemplate.update("DELETE FROM rfid WHERE ps_id = ?", psId);
+		jdbcTemplate.update("DELETE FROM parking_space WHERE ps_id = ?", psId);
+	}
+
+	@Test
+	void concurrentEntriesAndExitsNeverOpenTwoSessionsForOneCard() throws Exception {
+		AtomicInteger entries = new AtomicInteger();
+		AtomicInteger exits = new AtomicInteger();
+		ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+		CountDownLatch start = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			for (int i = 0; i < REQUESTS; i++) {
+				String card = cards.get(i % CARDS);
+				boolean entry = (i / CARDS) % 2 == 0;
+				pool.execute(() -> {
+					try {
+						start.await();
+						if (entry) {
+							entryLogService.admitEntry(MC_CODE, card);
+							entries.incrementAndGet();
+						} else {
+							entryLogService.admitExit(MC_CODE, card);
+							exits.incrementAndGet();
+						}
+					} catch (RuntimeException e) {
+						if (!REJECTIONS.contains(e.getMessage())) {
+							unexpected.add(e);
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+			}
+			start.countDown();
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES), "requests did not finish");
+		}
+		cards.forEach(card -> admissionIndex.awaitPersisted(card, 10_000));
+
+		assertTrue(unexpected.isEmpty(), () -> "unexpected failures: " + unexpected);
+		assertTrue(entries.get() > 0 && exits.get() > 0, "no request was accepted");
+
+		Integer overlapping = jdbcTemplate.queryForObject("""
+				SELECT count(*) FROM entry_log a
+				JOIN entry_log b ON a.rfid_id = b.rfid_id AND a.log_id < b.log_id
+				JOIN rfid r ON r.rfid_id = a.rfid_id
+				WHERE r.ps_id = ?
+				  AND a.in_time < COALESCE(b.out_time, 'infinity')
+				  AND b.in_time < COALESCE(a.out_time, 'infinity')
+				""", Integer.class, psId);
+		assertEquals(0, overlapping, "overlapping sessions for one card");
+
+		Integer doubleOpen = jdbcTemplate.queryForObject("""
+				SELECT count(*) FROM (
+				    SELECT rfid_id FROM entry_log WHERE ps_id = ? AND out_time IS NULL
+				    GROUP BY rfid_id HAVING count(*) > 1) cards
+				""", Integer.class, psId);
+		assertEquals(0, doubleOpen, "card with more than one open session");
+
+		Integer inconsistent = jdbcTemplate.queryForObject("""
+				SELECT count(*) FROM rfid r
+				WHERE r.ps_id = ?
+				  AND r.currently_used <> EXISTS (
+				      SELECT 1 FROM entry_log el WHERE el.rfid_id = r.rfid_id AND el.out_time IS NULL)
+				""", Integer.class, psId);
+		assertEquals(0, inconsistent, "currently_used disagrees with the open sessions");
+
+		Integer untracked = jdbcTemplate.queryForObject("""
+				SELECT count(*) FROM entry_log el
+				FULL JOIN (SELECT a.* FROM active_session a WHERE a.ps_id = ?) a ON a.log_id = el.log_id
+				WHERE (el.ps_id = ? AND el.out_time IS NULL) IS DISTINCT FROM (a.log_id IS NOT NULL)
+				""", Integer.class, psId, psId);
+		assertEquals(0, untracked, "active_session disagrees with the open sessions");
+
+		assertEquals(jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM entry_log WHERE ps_id = ? AND out_time IS NULL", Integer.class, psId),
+				jdbcTemplate.queryForObject(
+						"SELECT vehicles_inside FROM parking_space_occupancy WHERE ps_id = ?", Integer.class, psId),
+				"occupancy counter disagrees with the open sessions");
+
+		assertEquals(entries.get(), jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM entry_log el JOIN rfid r ON r.rfid_id = el.rfid_id WHERE r.ps_id = ?",
+				Integer.class, psId));
+		assertEquals(exits.get(), jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM entry_log el JOIN rfid r ON r.rfid_id = el.rfid_id "
+						+ "WHERE r.ps_id = ? AND el.out_time IS NOT NULL",
+				Integer.class, psId));
+	}
+
+	@Test
+	void cardChangedElsewhereIsReadFromTheDatabase() {
+		String card = cards.get(0);
+		entryLogService.admitEntry(MC_CODE, card);
+		admissionIndex.awaitPersisted(card, 10_000);
+
+		// The vehicle leaves through another instance: the row changes, this instance's index does not
+		Integer rfidId = jdbcTemplate.queryForObject("SELECT rfid_id FROM rfid WHERE rfid_code = ?", Integer.class, card);
+		jdbcTemplate.update("UPDATE entry_log SET out_time = now() WHERE rfid_id = ? AND out_time IS NULL", rfidId);
+		jdbcTemplate.update("DELETE FROM active_session WHERE rfid_id = ?", rfidId);
+		jdbcTemplate.update("UPDATE parking_space_occupancy SET vehicles_inside = vehicles_inside - 1 WHERE ps_id = ?",
+				psId);
+		jdbcTemplate.update("UPDATE rfid SET currently_used = false WHERE rfid_id = ?", rfidId);
+
+		entryLogService.admitEntry(MC_CODE, card);
+		admissionIndex.awaitPersisted(card, 10_000);
+
+		assertEquals(2, jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM entry_log WHERE rfid_id = ?", Integer.class, rfidId));
+		assertEquals(1, jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM entry_log WHERE rfid_id = ? AND out_time IS NULL", Integer.class, rfidId));
+	}
+
+	@Test
+	void timedOutDecisionIsRolledBack() throws Exception {
+		assumeTrue(confirmGateWrites, "only the locked write has a deadline");
+		String card = cards.get(0);
+		Integer rfidId = jdbcTemplate.queryForObject("SELECT rfid_id FROM rfid WHERE rfid_code = ?", Integer.class,
+				card);
+
+		// Another transaction holds the card's row until the gate decision has given up
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService holder = Executors.newSingleThreadExecutor();
+		try {
+			holder.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+				jdbcTemplate.queryForObject("SELECT rfid_id FROM rfid WHERE rfid_id = ? FOR UPDATE", Integer.class,
+						rfidId);
+				locked.countDown();
+				try {
+					release.await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+			assertTrue(locked.await(10, TimeUnit.SECONDS), "row lock not taken");
+
+			RuntimeException timedOut = assertThrows(RuntimeException.class,
+					() -> entryLogService.admitEntry(MC_CODE, card));
+			// Not a rejection, so the gate does not remember it
+			assertTrue(timedOut instanceof DataAccessException || timedOut instanceof TransactionException,
+					() -> "unexpected failure: " + timedOut);
+		} finally {
+			release.countDown();
+			holder.shutdown();
+			assertTrue(holder.awaitTermination(30, TimeUnit.SECONDS), "lock holder did not finish");
+		}
+
+		assertEquals(0, jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM entry_log WHERE rfid_id = ?", Integer.class, rfidId));
+		assertEquals(false, jdbcTemplate.queryForObject(
+				"SELECT currently_used FROM rfid WHERE rfid_id = ?", Boolean.class, rfidId));
+
+		// The device's retry is decided afresh
+		entryLogService.admitEntry(MC_CODE, card);
+		assertEquals(1, jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM entry_log WHERE rfid_id = ? AND out_time IS NULL", Integer.class, rfidId));
+	}
+
+	private static String envOrDefault(String name, String defaultValue) {
+		String value = System.getenv(name);
+		return value != null && !value.isEmpty() ? value : defaultValue;
+	}
+}
@@ -0,0 +1,13 @@
+package com.smart_parking_system.backend.service;
+
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * The same requests with {@code entry-log.gate.confirm-write=false}: decided from the admission
+ * index, written behind it.
+ */
+@EnabledIfEnvironmentVariable(named = "SPS_TEST_DATABASE_URL", matches = ".+")
+@TestPropertySource(properties = "entry-log.gate.confirm-write=false")
+class EntryLogIndexAdmissionConcurrencyTest extends EntryLogAdmissionConcurrencyTest {
+}
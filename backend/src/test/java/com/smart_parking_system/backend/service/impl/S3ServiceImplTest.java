@@ -0,0 +1,85 @@
+package com.smart_parking_system.backend.service.impl;
+
+import com.smart_parking_system.backend.dto.S3PresignedUrlDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Presigns against a local S3-compatible endpoint (as used with MinIO). Signing is done locally,
+ * so no server has to be running.
+ */
+class S3ServiceImplTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private S3ServiceImpl s3Service;
+
+	@BeforeEach
+	void setUp() {
+		System.setProperty("aws.accessKeyId", "minioadmin");
+		System.setProperty("aws.secretAccessKey", "minioadmin");
+
+		s3Service = new S3ServiceImpl(meterRegistry);
+		ReflectionTestUtils.setField(s3Service, "bucketName", "sps-plates");
+		ReflectionTestUtils.setField(s3Service, "region", "us-east-1");
+		ReflectionTestUtils.setField(s3Service, "presignExpireSeconds", 300L);
+		ReflectionTestUtils.setField(s3Service, "endpoint", "http://localhost:9000");
+		ReflectionTestUtils.setField(s3Service, "pathStyleAccess", true);
+		ReflectionTestUtils.setField(s3Service, "presignCacheMarginSeconds", 60L);
+		ReflectionTestUtils.setField(s3Service, "presignCacheMaxEntries", 2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		s3Service.shutdown();
+		System.clearProperty("aws.accessKeyId");
+		System.clearProperty("aws.secretAccessKey");
+	}
+
+	@Test
+	void batchPresignsEachDistinctKeyAgainstTheEndpoint() {
+		List<S3PresignedUrlDto> urls = s3Service.presignGetUrls(Arrays.asList("plates/a.jpg", null, "plates/b.jpg", "plates/a.jpg", " "));
+
+		assertEquals(List.of("plates/a.jpg", "plates/b.jpg"), urls.stream().map(S3PresignedUrlDto::getKey).toList());
+		for (S3PresignedUrlDto url : urls) {
+			assertTrue(url.getUrl().startsWith("http://localhost:9000/sps-plates/" + url.getKey() + "?"), url.getUrl());
+			assertTrue(url.getUrl().contains("X-Amz-Expires=300"), url.getUrl());
+		}
+		assertNull(s3Service.presignGetUrl(null));
+	}
+
+	@Test
+	void reusesSignaturesUntilTheyAreEvicted() {
+		String first = s3Service.presignGetUrl("plates/a.jpg");
+		assertEquals(first, s3Service.presignGetUrl("plates/a.jpg"));
+		assertEquals(first, s3Service.presignGetUrls(List.of("plates/a.jpg")).get(0).getUrl());
+		assertEquals(2.0, meterRegistry.counter("s3.presign", "result", "cached").count());
+
+		// Capacity is two keys: a is the least recently used once b and c are added
+		s3Service.presignGetUrl("plates/b.jpg");
+		s3Service.presignGetUrl("plates/c.jpg");
+		assertEquals(3.0, meterRegistry.counter("s3.presign", "result", "signed").count());
+		s3Service.presignGetUrl("plates/a.jpg");
+		assertEquals(4.0, meterRegistry.counter("s3.presign", "result", "signed").count());
+	}
+
+	@Test
+	void resignsWhenTheCachedUrlIsAboutToExpire() throws InterruptedException {
+		ReflectionTestUtils.setField(s3Service, "presignExpireSeconds", 2L);
+
+		String first = s3Service.presignGetUrl("plates/a.jpg");
+		// X-Amz-Date has second resolution; a fresh signature one second later differs
+		Thread.sleep(1100);
+		assertNotEquals(first, s3Service.presignGetUrl("plates/a.jpg"));
+	}
+}
@@ -0,0 +1,97 @@
+package com.smart_parking_system.backend.service.lpr;
+
+import com.smart_parking_system.backend.service.IYoloService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the recognition queue against a counting stub recognizer to check that repeated snapshots
+ * of a card are answered from the {@link PlateDedupeCache} before the server is called.
+ */
+class LicensePlateRecognitionQueueTest {
+
+	@TempDir
+	Path tempDir;
+
+	private final AtomicInteger recognitions = new AtomicInteger();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private ImagePreprocessor preprocessor;
+	private LicensePlateRecognitionQueue queue;
+
+	@BeforeEach
+	void setUp() {
+		IYoloService recognizer = new IYoloService() {
+			@Override
+			public String detectLicensePlate(String imageBase64) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public String recognizePlate(Path image, long timeoutMillis) {
+				return "PLATE-" + recognitions.incrementAndGet();
+			}
+		};
+		preprocessor = new ImagePreprocessor(false, 1280, 0.8f, "", 1, 10, meterRegistry);
+		PlateDedupeCache dedupeCache = new PlateDedupeCache(true, 6, 60000, 100, meterRegistry);
+		queue = new LicensePlateRecognitionQueue(recognizer, preprocessor, dedupeCache,
+				2, 10, 5000, 1, 10, 5, 1000, meterRegistry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		queue.shutdown();
+		preprocessor.shutdown();
+	}
+
+	@Test
+	void repeatedSnapshotOfTheSameCardIsAnsweredFromTheCache() throws Exception {
+		assertEquals("PLATE-1", recognize("CARD-1", snapshot("first", false)));
+		assertEquals("PLATE-1", recognize("CARD-1", snapshot("retry", false)));
+
+		assertEquals(1, recognitions.get());
+		assertEquals(1.0, meterRegistry.get("lpr.requests").tag("outcome", "deduplicated").counter().count());
+	}
+
+	@Test
+	void otherCardsAndDifferentFramesAreRecognized() throws Exception {
+		assertEquals("PLATE-1", recognize("CARD-1", snapshot("first", false)));
+		assertEquals("PLATE-2", recognize("CARD-2", snapshot("other-card", false)));
+		assertEquals("PLATE-3", recognize("CARD-1", snapshot("other-frame", true)));
+
+		assertEquals(3, recognitions.get());
+	}
+
+	private String recognize(String rfidCode, Path image) throws Exception {
+		return queue.submit(rfidCode, image).get(5, TimeUnit.SECONDS);
+	}
+
+	// Grey frame with white stripes in its top or bottom half; the two layouts hash far apart
+	private Path snapshot(String name, boolean stripesOnTop) throws IOException {
+		BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(Color.GRAY);
+		graphics.fillRect(0, 0, 64, 64);
+		graphics.setColor(Color.WHITE);
+		for (int x = 0; x < 64; x += 16) {
+			graphics.fillRect(x, stripesOnTop ? 0 : 32, 8, 32);
+		}
+		graphics.dispose();
+		Path file = tempDir.resolve(name + ".jpg");
+		ImageIO.write(image, "jpg", file.toFile());
+		return file;
+	}
+}
@@ -0,0 +1,142 @@
+package com.smart_parking_system.backend.service.lpr;
+
+import com.smart_parking_system.backend.dto.YoloResponseDto;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the batching client against a stub recognizer that answers every "images" part with the
+ * plate written into the image file.
+ */
+class LprBatchingClientTest {
+
+	private static final Pattern PLATE = Pattern.compile("PLATE-\\d+");
+
+	@TempDir
+	Path tempDir;
+
+	private HttpServer stub;
+	private final AtomicInteger calls = new AtomicInteger();
+	private volatile boolean failing;
+	private LprBatchingClient client;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		stub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		stub.createContext("/upload-batch", this::recognize);
+		stub.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (client != null) {
+			client.shutdown();
+		}
+		stub.stop(0);
+	}
+
+	@Test
+	void concurrentRequestsShareCallsAndGetTheirOwnResults() throws Exception {
+		client = client(8, 200);
+
+		List<CompletableFuture<YoloResponseDto>> results = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			results.add(client.submit(image(i)));
+		}
+
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals("PLATE-" + i, results.get(i).get(5, TimeUnit.SECONDS).getPlate());
+		}
+		assertEquals(3, calls.get(), "20 requests in batches of at most 8");
+	}
+
+	@Test
+	void loneRequestIsSentAfterTheLingerTime() throws Exception {
+		client = client(8, 20);
+
+		assertEquals("PLATE-7", client.submit(image(7)).get(5, TimeUnit.SECONDS).getPlate());
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	void failedCallFailsEveryRequestInTheBatch() throws Exception {
+		failing = true;
+		client = client(8, 200);
+
+		List<CompletableFuture<YoloResponseDto>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			results.add(client.submit(image(i)));
+		}
+
+		int counted = 0;
+		for (CompletableFuture<YoloResponseDto> result : results) {
+			ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+			assertInstanceOf(RestClientException.class, e.getCause());
+			if (assertInstanceOf(LprCallException.class, e.getCause()).countOnce()) {
+				counted++;
+			}
+		}
+		assertTrue(calls.get() <= 1);
+		assertEquals(calls.get(), counted, "a failed call counts as one failure");
+	}
+
+	private LprBatchingClient client(int maxBatchSize, long lingerMillis) {
+		String url = "http://127.0.0.1:" + stub.getAddress().getPort() + "/upload-batch";
+		return new LprBatchingClient(new RestTemplate(), url, maxBatchSize, lingerMillis, new SimpleMeterRegistry());
+	}
+
+	private Path image(int i) throws IOException {
+		return Files.writeString(tempDir.resolve(i + ".jpg"), "PLATE-" + i);
+	}
+
+	private void recognize(HttpExchange exchange) throws IOException {
+		calls.incrementAndGet();
+		String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1);
+
+		byte[] response;
+		if (failing) {
+			response = "{\"status\":\"error\"}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(500, response.length);
+		} else {
+			List<String> results = new ArrayList<>();
+			Matcher plate = PLATE.matcher(body);
+			while (plate.find()) {
+				results.add("{\"status\":\"success\",\"plate\":\"" + plate.group() + "\"}");
+			}
+			response = ("{\"results\":[" + String.join(",", results) + "]}").getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, response.length);
+		}
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(response);
+		}
+	}
+}
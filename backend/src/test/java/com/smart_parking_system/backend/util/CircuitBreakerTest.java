@@ -0,0 +1,87 @@
+package com.smart_parking_system.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+	private static final long OPEN_MILLIS = 1000;
+
+	private final AtomicLong now = new AtomicLong(10_000);
+	private final CircuitBreaker breaker = new CircuitBreaker(3, OPEN_MILLIS, now::get);
+
+	@Test
+	void opensAfterThresholdConsecutiveFailures() {
+		fail(2);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		assertTrue(breaker.tryAcquire());
+		breaker.recordFailure();
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	void successResetsTheFailureCount() {
+		fail(2);
+		assertTrue(breaker.tryAcquire());
+		breaker.recordSuccess();
+		fail(2);
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+	}
+
+	@Test
+	void halfOpenAdmitsASingleTrial() {
+		fail(3);
+		now.addAndGet(OPEN_MILLIS - 1);
+		assertFalse(breaker.tryAcquire());
+
+		now.addAndGet(1);
+		assertTrue(breaker.tryAcquire());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+		assertFalse(breaker.tryAcquire(), "second call during the trial");
+	}
+
+	@Test
+	void trialOutcomeClosesOrReopens() {
+		fail(3);
+		now.addAndGet(OPEN_MILLIS);
+		assertTrue(breaker.tryAcquire());
+		breaker.recordFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+		assertFalse(breaker.tryAcquire(), "reopened for a full interval");
+
+		now.addAndGet(OPEN_MILLIS);
+		assertTrue(breaker.tryAcquire());
+		breaker.recordSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+	}
+
+	@Test
+	void releaseFreesTheTrialWithoutAnOutcome() {
+		fail(3);
+		now.addAndGet(OPEN_MILLIS);
+		assertTrue(breaker.tryAcquire());
+
+		breaker.release();
+
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+		assertTrue(breaker.tryAcquire(), "next trial admitted");
+		assertFalse(breaker.tryAcquire());
+	}
+
+	private void fail(int times) {
+		for (int i = 0; i < times; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.recordFailure();
+		}
+	}
+}
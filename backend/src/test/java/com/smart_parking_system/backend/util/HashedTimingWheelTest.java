@@ -0,0 +1,84 @@
+package com.smart_parking_system.backend.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+
+	private static final long TICK = 100;
+	private static final int SIZE = 8;
+	private static final long START = 1_000_000;
+
+	private final HashedTimingWheel<String> wheel = new HashedTimingWheel<>(TICK, SIZE);
+	private final List<String> due = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		// Pins the wheel's position to START instead of the wall clock
+		wheel.advance(START, due::add);
+	}
+
+	@Test
+	void keyComesUpAtItsTick() {
+		wheel.schedule("a", START + 3 * TICK);
+
+		wheel.advance(START + 2 * TICK, due::add);
+		assertTrue(due.isEmpty());
+
+		wheel.advance(START + 3 * TICK, due::add);
+		assertEquals(List.of("a"), due);
+
+		due.clear();
+		wheel.advance(START + 3 * TICK + SIZE * TICK, due::add);
+		assertTrue(due.isEmpty(), "drained keys do not come up again");
+	}
+
+	@Test
+	void pastDeadlineComesUpOnTheNextTick() {
+		wheel.schedule("late", START - 5 * TICK);
+
+		wheel.advance(START + TICK, due::add);
+
+		assertEquals(List.of("late"), due);
+	}
+
+	@Test
+	void deadlineBeyondOneRevolutionComesUpEarlyAndIsRescheduled() {
+		long deadline = START + 20 * TICK;
+		wheel.schedule("far", deadline);
+		List<Long> early = new ArrayList<>();
+
+		for (long now = START + TICK; now <= deadline; now += TICK) {
+			long tickTime = now;
+			wheel.advance(now, key -> {
+				if (tickTime < deadline) {
+					early.add((tickTime - START) / TICK);
+					wheel.schedule(key, deadline);
+				} else {
+					due.add(key);
+				}
+			});
+		}
+
+		// One revolution at a time: ticks 8 and 16, then the real deadline
+		assertEquals(List.of(8L, 16L), early);
+		assertEquals(List.of("far"), due);
+	}
+
+	@Test
+	void longPauseDrainsEveryBucketOnce() {
+		wheel.schedule("a", START + TICK);
+		wheel.schedule("b", START + SIZE * TICK);
+
+		wheel.advance(START + 10 * SIZE * TICK, due::add);
+
+		assertEquals(2, due.size());
+		assertTrue(due.containsAll(List.of("a", "b")));
+	}
+}
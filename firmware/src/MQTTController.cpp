@@ -370,6 +370,18 @@ bool MQTTController::publishProvisioningRequest() {
     sensor2["type"] = "ultrasonic";
     sensor2["slotName"] = COMPONENT_SLOT_NAME_2;
     
+    // Hash of the manifest lets the backend answer an unchanged re-provision from cache
+    String manifest;
+    serializeJson(doc, manifest);
+    uint32_t hash = 2166136261u;  // FNV-1a
+    for (size_t i = 0; i < manifest.length(); i++) {
+        hash ^= (uint8_t) manifest[i];
+        hash *= 16777619u;
+    }
+    char hashHex[9];
+    snprintf(hashHex, sizeof(hashHex), "%08x", hash);
+    doc["manifestHash"] = hashHex;
+    
     String payload;
     serializeJson(doc, payload);
     
@@ -14,13 +14,14 @@ import {
   LogOut as LogOutIcon,
   Calendar,
   Camera, // Import Camera icon
+  Download,
 } from 'lucide-react';
 import toast from 'react-hot-toast';
 
 import { useAuth } from '../context/AuthContext';
 import entryLogService, { type EntryLogDto } from '../services/entryLogService';
 import parkingSpaceService, { type ParkingSpaceDto } from '../services/parkingSpaceService';
-import s3Service from '../services/s3Service'; // Import S3 service
+import s3Service, { type PresignedUrl } from '../services/s3Service'; // Import S3 service
 import { useWebSocket } from '../services/websocket';
 
 export default function EntryLogPage() {
@@ -31,6 +32,11 @@ export default function EntryLogPage() {
   const [parkingSpaces, setParkingSpaces] = useState<ParkingSpaceDto[]>([]);
   const [selectedParkingSpaceId, setSelectedParkingSpaceId] = useState<number | null>(null);
   const [isLoading, setIsLoading] = useState(true);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
+  const [isExporting, setIsExporting] = useState(false);
+  const [vehiclesInside, setVehiclesInside] = useState<number | null>(null);
+  const [imageUrls, setImageUrls] = useState<Record<string, PresignedUrl>>({});
 
   useEffect(() => {
     fetchParkingSpaces();
@@ -54,9 +60,11 @@ export default function EntryLogPage() {
         // Refresh the entry logs when a new event occurs
         fetchEntryLogs(selectedParkingSpaceId);
 
-        // Show toast notification
-        const action = event.action === 'vehicle_entered' ? 'entered' : 'exited';
-        toast.success(`Vehicle ${event.licensePlate} ${action}`);
+        // Show toast notification (plate recognition only fills in the plate of an existing entry)
+        if (event.action !== 'license_plate_recognized') {
+          const action = event.action === 'vehicle_entered' ? 'entered' : 'exited';
+          toast.success(`Vehicle ${event.licensePlate} ${action}`);
+        }
       }
     });
 
@@ -89,20 +97,84 @@ export default function EntryLogPage() {
     }
   };
 
+  const fetchVehiclesInside = async (parkingSpaceId: number) => {
+    try {
+      const data = await entryLogService.getVehiclesInside(parkingSpaceId);
+      setVehiclesInside(data.vehiclesInside);
+    } catch (error) {
+      console.error('Error fetching vehicles inside:', error);
+      setVehiclesInside(null);
+    }
+  };
+
   const fetchEntryLogs = async (parkingSpaceId: number) => {
+    fetchVehiclesInside(parkingSpaceId);
     try {
       setIsLoading(true);
-      const data = await entryLogService.getEntryLogsByParkingSpace(parkingSpaceId);
-      setEntryLogs(data);
+      // Only the newest page is loaded; older sessions come in with "Load more"
+      const page = await entryLogService.getEntryLogPage({ parkingSpaceId });
+      setEntryLogs(page.items);
+      setNextCursor(page.nextCursor);
+      presignImages(page.items);
     } catch (error) {
       console.error('Error fetching entry logs:', error);
       toast.error('Failed to load entry logs');
       setEntryLogs([]);
+      setNextCursor(null);
     } finally {
       setIsLoading(false);
     }
   };
 
+  const loadMoreEntryLogs = async () => {
+    if (!selectedParkingSpaceId || !nextCursor) return;
+    try {
+      setIsLoadingMore(true);
+      const page = await entryLogService.getEntryLogPage({ parkingSpaceId: selectedParkingSpaceId, cursor: nextCursor });
+      const known = new Set(entryLogs.map(log => log.id));
+      const older = page.items.filter(log => !known.has(log.id));
+      setEntryLogs(current => [...current, ...older]);
+      setNextCursor(page.nextCursor);
+      presignImages(older, true);
+    } catch (error) {
+      console.error('Error loading more entry logs:', error);
+      toast.error('Failed to load more entry logs');
+    } finally {
+      setIsLoadingMore(false);
+    }
+  };
+
+  const exportEntryLogs = async () => {
+    if (!selectedParkingSpaceId) return;
+    try {
+      setIsExporting(true);
+      const blob = await entryLogService.exportEntryLogs({ parkingSpaceId: selectedParkingSpaceId, format: 'csv' });
+      const url = URL.createObjectURL(blob);
+      const link = document.createElement('a');
+      link.href = url;
+      link.download = `entry-logs-ps-${selectedParkingSpaceId}.csv`;
+      link.click();
+      URL.revokeObjectURL(url);
+    } catch (error) {
+      console.error('Error exporting entry logs:', error);
+      toast.error('Failed to export entry logs');
+    } finally {
+      setIsExporting(false);
+    }
+  };
+
+  // Presign every plate image of the listing in one request; opening an image then needs no round trip
+  const presignImages = async (logs: EntryLogDto[], append = false) => {
+    const keys = logs.map(log => log.licensePlateImageKey).filter((key): key is string => !!key);
+    try {
+      const urls = Object.fromEntries((await s3Service.presignGetBatch(keys)).map(url => [url.key, url]));
+      setImageUrls(current => (append ? { ...current, ...urls } : urls));
+    } catch (error) {
+      console.error('Error presigning license plate images:', error);
+      if (!append) setImageUrls({});
+    }
+  };
+
   const formatDateTime = (dateString: string | null) => {
     if (!dateString) return '—';
     const date = new Date(dateString);
@@ -133,7 +205,9 @@ export default function EntryLogPage() {
     }
 
     try {
-      const url = await s3Service.presignGet(key);
+      const presigned = imageUrls[key];
+      const stillValid = presigned && new Date(presigned.expiresAt).getTime() - Date.now() > 10_000;
+      const url = stillValid ? presigned.url : await s3Service.presignGet(key);
       if (!url) {
         toast.error('Could not generate image URL');
         return;
@@ -274,9 +348,28 @@ export default function EntryLogPage() {
                 <h2 className="text-lg font-semibold text-slate-900">
                   {selectedParkingSpace ? `${selectedParkingSpace.name} - Entry Logs` : 'Entry Logs'}
                 </h2>
-                <div className="flex items-center gap-2 text-sm text-slate-600">
-                  <Calendar className="h-4 w-4" />
-                  <span>{entryLogs.length} record{entryLogs.length !== 1 ? 's' : ''}</span>
+                <div className="flex items-center gap-4">
+                  {vehiclesInside !== null && (
+                    <div className="flex items-center gap-2 text-sm text-slate-600">
+                      <Car className="h-4 w-4" />
+                      <span>{vehiclesInside} inside</span>
+                    </div>
+                  )}
+                  <div className="flex items-center gap-2 text-sm text-slate-600">
+                    <Calendar className="h-4 w-4" />
+                    <span>
+                      {entryLogs.length}
+                      {nextCursor ? '+' : ''} record{entryLogs.length !== 1 ? 's' : ''}
+                    </span>
+                  </div>
+                  <button
+                    onClick={exportEntryLogs}
+                    disabled={!selectedParkingSpaceId || isExporting}
+                    className="flex items-center gap-2 rounded-lg border border-slate-200 bg-white px-3 py-1.5 text-sm font-semibold text-slate-700 hover:bg-slate-50 disabled:opacity-50"
+                  >
+                    <Download className="h-4 w-4" />
+                    {isExporting ? 'Exporting...' : 'Export CSV'}
+                  </button>
                 </div>
               </div>
 
@@ -375,6 +468,18 @@ export default function EntryLogPage() {
                         ))}
                     </tbody>
                   </table>
+                  {nextCursor && (
+                    <div className="mt-4 flex justify-center">
+                      <button
+                        type="button"
+                        onClick={loadMoreEntryLogs}
+                        disabled={isLoadingMore}
+                        className="rounded-lg border border-slate-200 bg-white px-4 py-2 text-sm font-semibold text-slate-700 hover:bg-slate-50 disabled:opacity-50"
+                      >
+                        {isLoadingMore ? 'Loading...' : 'Load more'}
+                      </button>
+                    </div>
+                  )}
                 </div>
               )}
             </div>
@@ -160,14 +160,16 @@ export default function HomePage() {
     const unsubscribe = subscribe('/topic/entrylog_new_events', (event: any) => {
       // Only process events for the currently selected parking space
       if (event?.type === 'entrylog_event' && event.parkingSpaceId === selectedParkingSpaceId) {
-        const action = event.action === 'vehicle_entered' ? 'entered' : 'exited';
-        const actionText = action === 'entered' ? 'entered' : 'exited';
+        const label =
+          event.action === 'license_plate_recognized'
+            ? 'Plate recognized'
+            : `Vehicle ${event.action === 'vehicle_entered' ? 'entered' : 'exited'}`;
 
         setActivities((prev) =>
           [
             {
               eventId: event.eventId,
-              label: `Vehicle ${actionText}`,
+              label,
               value: `License: ${event.licensePlate}`,
               time: 'just now',
               timestamp: Date.now(),
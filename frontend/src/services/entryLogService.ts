@@ -12,6 +12,43 @@ export interface EntryLogDto {
   parkingSpaceId: number;
 }
 
+export interface EntryLogPageDto {
+  items: EntryLogDto[];
+  /** Pass back as `cursor` to load the next page; null on the last page */
+  nextCursor: string | null;
+}
+
+export interface EntryLogPageParams {
+  parkingSpaceId: number;
+  /** ISO instants; `from` is inclusive, `to` exclusive */
+  from?: string;
+  to?: string;
+  activeOnly?: boolean;
+  /** Plate prefix */
+  plate?: string;
+  cursor?: string | null;
+  limit?: number;
+}
+
+export interface VehiclesInsideDto {
+  parkingSpaceId: number;
+  vehiclesInside: number;
+}
+
+export type EntryLogExportFormat = 'csv' | 'ndjson';
+
+export interface EntryLogExportParams {
+  parkingSpaceId: number;
+  /** ISO instants; `from` is inclusive, `to` exclusive */
+  from?: string;
+  to?: string;
+  activeOnly?: boolean;
+  /** Plate prefix */
+  plate?: string;
+  format?: EntryLogExportFormat;
+  gzip?: boolean;
+}
+
 class EntryLogService {
   async getEntryLogById(id: number): Promise<EntryLogDto> {
     const response = await api.get<EntryLogDto>(`/api/entry-logs/${id}`);
@@ -24,6 +61,30 @@ class EntryLogService {
     });
     return response.data;
   }
+
+  async getEntryLogPage(params: EntryLogPageParams): Promise<EntryLogPageDto> {
+    const response = await api.get<EntryLogPageDto>('/api/entry-logs/page', {
+      params: { ...params, cursor: params.cursor ?? undefined }
+    });
+    return response.data;
+  }
+
+  /** Live counter kept by the backend; no log rows are counted */
+  async getVehiclesInside(parkingSpaceId: number): Promise<VehiclesInsideDto> {
+    const response = await api.get<VehiclesInsideDto>('/api/entry-logs/inside-count', {
+      params: { parkingSpaceId }
+    });
+    return response.data;
+  }
+
+  /** Full history matching the filters, oldest first; the server streams it as it reads */
+  async exportEntryLogs(params: EntryLogExportParams): Promise<Blob> {
+    const response = await api.get<Blob>('/api/entry-logs/export', {
+      params,
+      responseType: 'blob'
+    });
+    return response.data;
+  }
 }
 
 export default new EntryLogService();
@@ -8,13 +8,28 @@ export interface PresignGetResponse {
   url: string | null;
 }
 
+export interface PresignedUrl {
+  key: string;
+  url: string;
+  expiresAt: string;
+}
+
+export interface PresignGetBatchResponse {
+  urls: PresignedUrl[];
+}
+
 class S3Service {
   async presignGet(key: string): Promise<string | null> {
     if (!key) return null;
     const response = await api.post<PresignGetResponse>('/api/s3/presign-get', { key } satisfies PresignGetRequest);
     return response.data.url;
   }
+
+  async presignGetBatch(keys: string[]): Promise<PresignedUrl[]> {
+    if (keys.length === 0) return [];
+    const response = await api.post<PresignGetBatchResponse>('/api/s3/presign-get-batch', { keys });
+    return response.data.urls;
+  }
 }
 
 export default new S3Service();
-
@@ -3,12 +3,14 @@ import binascii
 import os
 import time
 import uuid
+from typing import List
+
 import boto3
 from botocore.exceptions import BotoCoreError, ClientError
-from fastapi import FastAPI, HTTPException
+from fastapi import FastAPI, File, HTTPException, UploadFile
 from pydantic import BaseModel
 from dotenv import load_dotenv
-from processor import process_image
+from processor import process_image, process_images
 from database import save_plate
 
 load_dotenv()
@@ -28,6 +30,50 @@ class Base64ImageRequest(BaseModel):
     image_base64: str
 
 
+def store_image(image_bytes: bytes):
+    timestamp = int(time.time())
+    unique_id = uuid.uuid4().hex[:6]
+    object_key = f"{timestamp}_{unique_id}.jpg"
+    if S3_PREFIX:
+        object_key = f"{S3_PREFIX}/{object_key}"
+
+    try:
+        s3_client.put_object(
+            Bucket=S3_BUCKET,
+            Key=object_key,
+            Body=image_bytes,
+            ContentType="image/jpeg",
+        )
+        print(f"Image uploaded to S3: s3://{S3_BUCKET}/{object_key}")
+    except (BotoCoreError, ClientError) as s3_error:
+        print(f"Failed to upload to S3: {s3_error}")
+        raise HTTPException(status_code=500, detail="Failed to upload image to storage")
+
+    return object_key, timestamp
+
+
+def plate_response(plate_text, object_key, timestamp):
+    if plate_text and plate_text not in ("NOT_FOUND", "DECODE_ERROR"):
+        save_plate(plate_text)
+        return {
+            "status": "success",
+            "plate": plate_text,
+            "saved_as": object_key,
+            "timestamp": timestamp,
+        }
+
+    return {
+        "status": "failed",
+        "reason": "No plate detected",
+        "saved_as": object_key,
+    }
+
+
+def store_and_recognize(image_bytes: bytes):
+    object_key, timestamp = store_image(image_bytes)
+    return plate_response(process_image(image_bytes), object_key, timestamp)
+
+
 @app.post("/upload")
 async def upload_image(payload: Base64ImageRequest):
     try:
@@ -44,43 +90,57 @@ async def upload_image(payload: Base64ImageRequest):
         if not image_bytes:
             raise HTTPException(status_code=400, detail="Image data is empty")
 
-        timestamp = int(time.time())
-        unique_id = uuid.uuid4().hex[:6]
-        object_key = f"{timestamp}_{unique_id}.jpg"
-        if S3_PREFIX:
-            object_key = f"{S3_PREFIX}/{object_key}"
+        return store_and_recognize(image_bytes)
 
-        try:
-            s3_client.put_object(
-                Bucket=S3_BUCKET,
-                Key=object_key,
-                Body=image_bytes,
-                ContentType="image/jpeg",
-            )
-            print(f"Image uploaded to S3: s3://{S3_BUCKET}/{object_key}")
-        except (BotoCoreError, ClientError) as s3_error:
-            print(f"Failed to upload to S3: {s3_error}")
-            raise HTTPException(status_code=500, detail="Failed to upload image to storage")
-
-        plate_text = process_image(image_bytes)
-
-        if plate_text and plate_text != "NOT_FOUND":
-            save_plate(plate_text)
-            return {
-                "status": "success",
-                "plate": plate_text,
-                "saved_as": object_key,
-                "timestamp": timestamp,
-            }
+    except HTTPException:
+        raise
+    except Exception as e:
+        print(f"Error during upload/processing: {e}")
+        return {"status": "error", "message": str(e)}
 
-        return {
-            "status": "failed",
-            "reason": "No plate detected",
-            "saved_as": object_key,
-        }
+
+@app.post("/upload-binary")
+async def upload_image_binary(image: UploadFile = File(...)):
+    """Same as /upload, but takes the JPEG as a multipart file part instead of base64 JSON."""
+    try:
+        image_bytes = await image.read()
+
+        if not image_bytes:
+            raise HTTPException(status_code=400, detail="Image data is empty")
+
+        return store_and_recognize(image_bytes)
 
     except HTTPException:
         raise
     except Exception as e:
         print(f"Error during upload/processing: {e}")
-        return {"status": "error", "message": str(e)}
\ No newline at end of file
+        return {"status": "error", "message": str(e)}
+
+
+@app.post("/upload-batch")
+async def upload_image_batch(images: List[UploadFile] = File(...)):
+    """Recognizes several multipart "images" parts with one model call; results keep the part order."""
+    try:
+        payloads = [await image.read() for image in images]
+        results = [None] * len(payloads)
+
+        stored = {}
+        for i, data in enumerate(payloads):
+            if data:
+                stored[i] = store_image(data)
+            else:
+                results[i] = {"status": "failed", "reason": "Image data is empty"}
+
+        indexes = list(stored)
+        plates = process_images([payloads[i] for i in indexes]) if indexes else []
+        for i, plate in zip(indexes, plates):
+            object_key, timestamp = stored[i]
+            results[i] = plate_response(plate, object_key, timestamp)
+
+        return {"results": results}
+
+    except HTTPException:
+        raise
+    except Exception as e:
+        print(f"Error during batch upload/processing: {e}")
+        return {"status": "error", "message": str(e)}
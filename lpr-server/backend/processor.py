@@ -23,33 +23,44 @@ ocr = PaddleOCR(use_angle_cls=True)
 model = YOLO("weights/best.pt")
 print("Models loaded successfully.")
 
+def read_plate(img, r):
+    if len(r.boxes) == 0:
+        return "NOT_FOUND"
+
+    box = r.boxes[0]
+    x1, y1, x2, y2 = map(int, box.xyxy[0])
+
+    # Crop logic
+    h, w, _ = img.shape
+    crop = img[max(0, y1-2):min(h, y2+2), max(0, x1-2):min(w, x2+2)]
+    cv2.imwrite("data/crops/crop.jpg", crop)
+    # OCR logic (No arguments here either)
+    result = ocr.predict(crop)
+    print(f"OCR Result: {result[0]['rec_texts']}")
+
+    if result:
+        return ''.join(result[0]["rec_texts"])
+
+    return "NOT_FOUND"
+
+
 def process_image(image_bytes):
-    nparr = np.frombuffer(image_bytes, np.uint8)
-    img = cv2.imdecode(nparr, cv2.IMREAD_COLOR)
-    
-    if img is None:
-        return "DECODE_ERROR"
-
-    # YOLO Detection
-    results = model(img)
-    
-    for r in results:
-        if len(r.boxes) > 0:
-            box = r.boxes[0]
-            x1, y1, x2, y2 = map(int, box.xyxy[0])
-            
-            # Crop logic
-            h, w, _ = img.shape
-            crop = img[max(0, y1-2):min(h, y2+2), max(0, x1-2):min(w, x2+2)]
-            cv2.imwrite("data/crops/crop.jpg", crop)
-            # OCR logic (No arguments here either)
-            result = ocr.predict(crop)
-            print(f"OCR Result: {result[0]['rec_texts']}")
-            # Ensure data directory exists
-
-         
-            if result:
-                text = ''.join(result[0]["rec_texts"])
-                return text
-
-    return "NOT_FOUND"
\ No newline at end of file
+    return process_images([image_bytes])[0]
+
+
+def process_images(images):
+    """Runs YOLO once over all decodable images, then OCR per detected plate. Keeps input order."""
+    decoded = [cv2.imdecode(np.frombuffer(b, np.uint8), cv2.IMREAD_COLOR) for b in images]
+    plates = ["DECODE_ERROR" if img is None else "NOT_FOUND" for img in decoded]
+
+    valid = [i for i, img in enumerate(decoded) if img is not None]
+    if not valid:
+        return plates
+
+    # YOLO Detection, one forward pass for the whole batch
+    results = model([decoded[i] for i in valid])
+
+    for i, r in zip(valid, results):
+        plates[i] = read_plate(decoded[i], r)
+
+    return plates
@@ -0,0 +1,96 @@
+"""
+Stand-in for the LPR server used for local testing of the backend.
+
+Speaks the same endpoints as backend/main.py (/upload, /upload-binary, /upload-batch) but loads
+no models and touches neither S3 nor the database. The plate is derived from a hash of the image
+bytes, so the same image always yields the same plate.
+
+Latency is simulated as a fixed cost per call plus a cost per image, which mimics how model
+inference is amortized over a batch:
+
+    STUB_CALL_MS   fixed cost of one model call (default 80)
+    STUB_IMAGE_MS  additional cost per image (default 10)
+    STUB_MISS_RATE fraction of images reported as "No plate detected" (default 0)
+"""
+import base64
+import binascii
+import hashlib
+import os
+import time
+import uuid
+from typing import List
+
+from fastapi import FastAPI, File, HTTPException, UploadFile
+from pydantic import BaseModel
+
+app = FastAPI()
+
+CALL_MS = float(os.getenv("STUB_CALL_MS", "80"))
+IMAGE_MS = float(os.getenv("STUB_IMAGE_MS", "10"))
+MISS_RATE = float(os.getenv("STUB_MISS_RATE", "0"))
+
+stats = {"calls": 0, "images": 0}
+
+
+class Base64ImageRequest(BaseModel):
+    image_base64: str
+
+
+def fake_plate(image_bytes: bytes):
+    digest = hashlib.sha1(image_bytes).digest()
+    if digest[0] / 255 < MISS_RATE:
+        return None
+    letters = "".join(chr(ord("A") + b % 26) for b in digest[1:4])
+    number = int.from_bytes(digest[4:6], "big") % 10000
+    return f"{digest[6] % 90 + 10}{letters}{number:04d}"
+
+
+def recognize(payloads):
+    stats["calls"] += 1
+    stats["images"] += len(payloads)
+    time.sleep((CALL_MS + IMAGE_MS * len(payloads)) / 1000)
+
+    results = []
+    for data in payloads:
+        if not data:
+            results.append({"status": "failed", "reason": "Image data is empty"})
+            continue
+        timestamp = int(time.time())
+        saved_as = f"stub/{timestamp}_{uuid.uuid4().hex[:6]}.jpg"
+        plate = fake_plate(data)
+        if plate:
+            results.append({"status": "success", "plate": plate, "saved_as": saved_as, "timestamp": timestamp})
+        else:
+            results.append({"status": "failed", "reason": "No plate detected", "saved_as": saved_as})
+    return results
+
+
+@app.post("/upload")
+async def upload_image(payload: Base64ImageRequest):
+    try:
+        image_bytes = base64.b64decode(payload.image_base64, validate=True)
+    except (binascii.Error, ValueError):
+        raise HTTPException(status_code=400, detail="Invalid base64 image data")
+    if not image_bytes:
+        raise HTTPException(status_code=400, detail="Image data is empty")
+    return recognize([image_bytes])[0]
+
+
+@app.post("/upload-binary")
+async def upload_image_binary(image: UploadFile = File(...)):
+    image_bytes = await image.read()
+    if not image_bytes:
+        raise HTTPException(status_code=400, detail="Image data is empty")
+    return recognize([image_bytes])[0]
+
+
+@app.post("/upload-batch")
+async def upload_image_batch(images: List[UploadFile] = File(...)):
+    payloads = [await image.read() for image in images]
+    return {"results": recognize(payloads)}
+
+
+@app.get("/stats")
+async def get_stats():
+    """Number of model calls and images seen so far, to check how well requests were batched."""
+    return stats